@@ -0,0 +1,58 @@
+package com.lld.practice.questions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic catalogs and query mixes shared by the benchmarks.
+ *
+ * Titles are two words drawn from a fixed vocabulary, so a one-word query matches roughly
+ * 2 * size / VOCABULARY books whatever the catalog size.
+ */
+final class BenchmarkCatalog {
+    static final int VOCABULARY = 20_000;
+    private static final List<String> CATEGORIES = Arrays.asList("Programming", "Design", "History", "Science",
+            "Fiction", "Mathematics", "Art", "Philosophy");
+
+    private BenchmarkCatalog() {
+    }
+
+    static String isbn(int i) {
+        return String.format("978%010d", i);
+    }
+
+    static String word(int i) {
+        return "w" + Integer.toString(i, 36);
+    }
+
+    // One pipeline per benchmark state, shared by its libraries and closed in its @TearDown
+    static EventPipeline quietEvents() {
+        return new EventPipeline(List.of()); // events are published as in production, printed nowhere
+    }
+
+    static Library library(String name, int size, int copies, long seed, EventPipeline events) {
+        Library library = new Library(name, "Benchmark Street");
+        library.setEventPipeline(events);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < size; i++) {
+            String title = word(random.nextInt(VOCABULARY)) + " " + word(random.nextInt(VOCABULARY));
+            String author = "Author " + word(random.nextInt(VOCABULARY / 10));
+            List<String> categories = List.of(CATEGORIES.get(i % CATEGORIES.size()));
+            library.addBook(new Book(isbn(i), title, author, categories), copies);
+        }
+        return library;
+    }
+
+    // A share of hitRatio queries name a vocabulary word; the rest match nothing
+    static String[] queries(int count, double hitRatio, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] queries = new String[count];
+        for (int i = 0; i < count; i++) {
+            queries[i] = random.nextDouble() < hitRatio
+                    ? word(random.nextInt(VOCABULARY))
+                    : "missing" + random.nextInt(Integer.MAX_VALUE);
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,57 @@
+package com.lld.practice.questions;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * searchBooksAcrossLibraries fanning out over many branches. Queries cycle through more
+ * distinct strings than the caches hold, so every call searches every branch.
+ *
+ * Run: java -jar target/benchmarks.jar CrossBranchSearchBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CrossBranchSearchBenchmark {
+    @Param({"10", "100", "300"})
+    int branches;
+
+    @Param({"1000", "20000"})
+    int booksPerBranch;
+
+    @Param({"0.5"})
+    double hitRatio;
+
+    EventPipeline events;
+    LibrarySystem system;
+    String[] queries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = BenchmarkCatalog.quietEvents();
+        system = new LibrarySystem();
+        for (int i = 0; i < branches; i++) {
+            system.addLibrary(BenchmarkCatalog.library("Branch " + i, booksPerBranch, 1, i, events));
+        }
+        queries = BenchmarkCatalog.queries(65_536, hitRatio, 13);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        events.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public List<Book> searchAllBranches(Cursor cursor) {
+        return system.searchBooksAcrossLibraries(queries[cursor.next++ % queries.length]);
+    }
+}
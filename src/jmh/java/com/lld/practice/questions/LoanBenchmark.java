@@ -0,0 +1,96 @@
+package com.lld.practice.questions;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Borrow followed by return of the same copy, under 1 to 64 threads.
+ *
+ * isbnsInRotation sets contention: with 1 every thread fights over the same stripe,
+ * with 4096 threads rarely meet. Each thread has its own Faculty user, so user limits
+ * never interfere.
+ *
+ * Run: java -jar target/benchmarks.jar LoanBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoanBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({"1", "64", "4096"})
+        int isbnsInRotation;
+
+        @Param({"true", "false"})
+        boolean metricsEnabled;
+
+        EventPipeline events;
+        Library library;
+        String[] isbns;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            events = BenchmarkCatalog.quietEvents();
+            // 64 copies each, so even at 64 threads a borrow never finds the shelf empty
+            library = BenchmarkCatalog.library("Loans", 10_000, 64, 42, events);
+            library.getMetrics().setEnabled(metricsEnabled);
+            isbns = new String[isbnsInRotation];
+            for (int i = 0; i < isbnsInRotation; i++) {
+                isbns[i] = BenchmarkCatalog.isbn(i);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            events.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Patron {
+        private static final AtomicInteger IDS = new AtomicInteger();
+
+        User user;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            user = new Faculty("F" + IDS.incrementAndGet(), "Benchmark Patron", "patron@example.com");
+        }
+    }
+
+    private static void borrowAndReturn(Catalog catalog, Patron patron, Blackhole blackhole) {
+        String isbn = catalog.isbns[patron.next++ % catalog.isbns.length];
+        blackhole.consume(catalog.library.borrowBook(isbn, patron.user));
+        blackhole.consume(catalog.library.returnBook(isbn, patron.user));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads01(Catalog catalog, Patron patron, Blackhole blackhole) {
+        borrowAndReturn(catalog, patron, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void threads04(Catalog catalog, Patron patron, Blackhole blackhole) {
+        borrowAndReturn(catalog, patron, blackhole);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void threads16(Catalog catalog, Patron patron, Blackhole blackhole) {
+        borrowAndReturn(catalog, patron, blackhole);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void threads64(Catalog catalog, Patron patron, Blackhole blackhole) {
+        borrowAndReturn(catalog, patron, blackhole);
+    }
+}
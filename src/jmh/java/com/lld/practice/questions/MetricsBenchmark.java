@@ -0,0 +1,65 @@
+package com.lld.practice.questions;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cost of instrumenting one operation: start() plus record() with an outcome, as the loan
+ * paths do, and the uncontended lock counter, under 1 to 16 threads sharing one
+ * LibraryMetrics. Compare against baseline for the overhead per operation. The budget is 50 ns
+ * per operation at the default sample interval; an interval of 1 times every operation.
+ *
+ * Run: java -jar target/benchmarks.jar MetricsBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    @Param({"true", "false"})
+    boolean metricsEnabled;
+
+    @Param({"16", "1"})
+    int sampleInterval;
+
+    LibraryMetrics metrics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metrics = new LibraryMetrics();
+        metrics.setEnabled(metricsEnabled);
+        metrics.setTimingSampleInterval(sampleInterval);
+    }
+
+    @Benchmark
+    public long baseline() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void record01() {
+        instrumentedOperation();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void record04() {
+        instrumentedOperation();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void record16() {
+        instrumentedOperation();
+    }
+
+    private void instrumentedOperation() {
+        metrics.recordUncontendedLock();
+        long start = metrics.start();
+        metrics.record(LibraryMetrics.Operation.BORROW, start, LoanOutcome.SUCCESS);
+    }
+}
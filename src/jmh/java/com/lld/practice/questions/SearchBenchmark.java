@@ -0,0 +1,62 @@
+package com.lld.practice.questions;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Token search over catalogs of 10K to 5M books.
+ *
+ * hitRatio is the share of queries that match anything. distinctQueries controls the
+ * search cache: 16 queries stay cached, 65536 cycle through it and always reach the index.
+ * The largest catalogs need a big heap, e.g. -jvmArgs -Xmx8g.
+ *
+ * Run: java -jar target/benchmarks.jar SearchBenchmark -p catalogSize=10000,1000000 -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    @Param({"10000", "100000", "1000000", "5000000"})
+    int catalogSize;
+
+    @Param({"0.1", "0.9"})
+    double hitRatio;
+
+    @Param({"16", "65536"})
+    int distinctQueries;
+
+    EventPipeline events;
+    Library library;
+    String[] queries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = BenchmarkCatalog.quietEvents();
+        library = BenchmarkCatalog.library("Search", catalogSize, 1, 7, events);
+        queries = BenchmarkCatalog.queries(distinctQueries, hitRatio, 11);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        events.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public List<Book> tokenSearch(Cursor cursor) {
+        return library.searchBooks(queries[cursor.next++ % queries.length]);
+    }
+
+    @Benchmark
+    public List<Book> rankedFirstPage(Cursor cursor) {
+        return library.searchBooks(queries[cursor.next++ % queries.length], 0, 20);
+    }
+}
@@ -0,0 +1,75 @@
+package com.lld.practice.questions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking front for a Library: borrows and returns run on worker threads and complete
+ * a CompletableFuture with a typed LoanResult, so request threads never wait on stripe locks
+ * or journal fsyncs and can pipeline many operations.
+ *
+ * At most maxInFlight operations are admitted at once. Beyond that, calls fail fast with a
+ * RejectedExecutionException instead of queueing without bound.
+ */
+class AsyncLibrary implements AutoCloseable {
+    private final Library library;
+    private final Semaphore admission;
+    private final ExecutorService workers;
+
+    public AsyncLibrary(Library library, int maxInFlight) {
+        this.library = library;
+        this.admission = new Semaphore(maxInFlight);
+        this.workers = Executors.newFixedThreadPool(maxInFlight, daemonThreads(library.getName()));
+    }
+
+    public CompletableFuture<LoanResult> borrowBook(String isbn, User user) {
+        return submit(() -> library.tryBorrow(isbn, user));
+    }
+
+    public CompletableFuture<LoanResult> returnBook(String isbn, User user) {
+        return submit(() -> library.tryReturn(isbn, user));
+    }
+
+    public int availablePermits() {
+        return admission.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    private CompletableFuture<LoanResult> submit(Supplier<LoanResult> operation) {
+        if (!admission.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many operations in flight"));
+        }
+        try {
+            // The permit is returned before the future completes, so callers chaining on it can be admitted
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return operation.get();
+                } finally {
+                    admission.release();
+                }
+            }, workers);
+        } catch (RejectedExecutionException e) { // closed
+            admission.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String libraryName) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, libraryName + "-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
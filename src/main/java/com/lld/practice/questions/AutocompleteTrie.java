@@ -0,0 +1,350 @@
+package com.lld.practice.questions;
+
+import java.util.*;
+
+/**
+ * Radix (Patricia) trie over book titles and authors for search-box autocomplete.
+ *
+ * Each edge holds a run of characters rather than one, so a node only exists where two keys
+ * branch or a key ends: at most two nodes per distinct title or author instead of one per
+ * character. Every node caches its top completions (most books first, then alphabetical),
+ * so a lookup only walks the prefix and never the subtree below it.
+ */
+class AutocompleteTrie {
+    // The cache size per node, and so the most completions a lookup returns
+    static final int MAX_SUGGESTIONS = 10;
+
+    private final Node root = new Node("");
+
+    public synchronized void add(Book book) {
+        insert(book.getTitle());
+        insert(book.getAuthor());
+    }
+
+    public synchronized void remove(Book book) {
+        delete(book.getTitle());
+        delete(book.getAuthor());
+    }
+
+    // Bulk load: counts each distinct title and author first, inserts it once with its final
+    // count, then fills every node's cached completions in one bottom-up pass
+    public synchronized void addAll(List<Book> books) {
+        Map<String, Completion> counted = new HashMap<>();
+        for (Book book : books) {
+            for (String text : List.of(book.getTitle(), book.getAuthor())) {
+                String key = normalize(text);
+                if (!key.isEmpty()) counted.computeIfAbsent(key, k -> new Completion(text)).count++;
+            }
+        }
+        counted.forEach((key, completion) -> {
+            Node node = nodeFor(key, null);
+            if (node.terminal == null) {
+                node.terminal = completion;
+            } else {
+                node.terminal.count += completion.count;
+            }
+        });
+        rebuildAll(root);
+    }
+
+    // Top completions from the node cache; a limit above MAX_SUGGESTIONS is clamped to it
+    public synchronized List<Suggestion> complete(String prefix, int limit) {
+        Node node = find(normalize(prefix), true);
+        if (node == null) return Collections.emptyList();
+
+        int count = Math.max(0, Math.min(Math.min(limit, MAX_SUGGESTIONS), node.topSize));
+        List<Suggestion> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new Suggestion(node.top[i].text, node.top[i].count));
+        }
+        return result;
+    }
+
+    // Books whose title or author is exactly this text, after normalization
+    public synchronized int count(String text) {
+        Node node = find(normalize(text), false);
+        return node != null && node.terminal != null ? node.terminal.count : 0;
+    }
+
+    // Every completion starting with the prefix, unranked; walks the whole subtree
+    public synchronized List<Suggestion> completeAll(String prefix) {
+        Node node = find(normalize(prefix), true);
+        List<Suggestion> result = new ArrayList<>();
+        if (node != null) collect(node, result);
+        return result;
+    }
+
+    // Matching is case-insensitive and ignores surrounding whitespace
+    static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private void insert(String text) {
+        String key = normalize(text);
+        if (key.isEmpty()) return;
+
+        List<Node> path = new ArrayList<>();
+        Node node = nodeFor(key, path);
+        if (node.terminal == null) {
+            node.terminal = new Completion(text);
+        }
+        Completion completion = node.terminal;
+        completion.count++;
+
+        // A count only grows here, so each cached list just needs the entry bubbled up
+        for (Node n : path) {
+            n.offer(completion);
+        }
+    }
+
+    private void delete(String text) {
+        String key = normalize(text);
+        if (key.isEmpty()) return;
+
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        for (int i = 0; i < key.length(); ) {
+            Node child = node.child(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) return;
+            i += child.label.length();
+            node = child;
+            path.add(node);
+        }
+        Completion completion = node.terminal;
+        if (completion == null) return;
+        if (--completion.count == 0) {
+            node.terminal = null;
+        }
+
+        // Rebuild bottom-up: a lower count may let another completion into the cache
+        for (int i = path.size() - 1; i >= 0; i--) {
+            if (path.get(i).contains(completion)) {
+                path.get(i).rebuild();
+            }
+        }
+        if (node.terminal == null) prune(path);
+    }
+
+    // Removes a node left with nothing below it and merges pass-through nodes into their only
+    // child, so removals do not leave the trie larger than a fresh build. Neither changes the
+    // completions under any remaining node, so the caches stay valid.
+    private void prune(List<Node> path) {
+        int last = path.size() - 1;
+        Node node = path.get(last);
+        if (last == 0) return;
+        Node parent = path.get(last - 1);
+        if (node.children.length == 0) {
+            parent.removeChild(node);
+            if (last - 1 > 0 && parent.terminal == null && parent.children.length == 1) {
+                path.get(last - 2).mergeWithOnlyChild(parent);
+            }
+        } else if (node.children.length == 1) {
+            parent.mergeWithOnlyChild(node);
+        }
+    }
+
+    // The node spelling exactly the key, splitting an edge or adding a leaf as needed.
+    // Every node from the root down to it is appended to path, when one is given.
+    private Node nodeFor(String key, List<Node> path) {
+        Node node = root;
+        if (path != null) path.add(node);
+        for (int i = 0; i < key.length(); ) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) {
+                child = node.addChild(new Node(key.substring(i)));
+            } else {
+                int common = commonPrefix(key, i, child.label);
+                if (common < child.label.length()) child = node.split(child, common);
+            }
+            i += child.label.length();
+            node = child;
+            if (path != null) path.add(node);
+        }
+        return node;
+    }
+
+    // With prefix, the topmost node whose subtree holds exactly the keys starting with key (the
+    // key may end inside its edge); otherwise the node spelling exactly the key
+    private Node find(String key, boolean prefix) {
+        Node node = root;
+        for (int i = 0; i < key.length(); ) {
+            Node child = node.child(key.charAt(i));
+            if (child == null) return null;
+            int common = commonPrefix(key, i, child.label);
+            if (common == child.label.length()) {
+                i += common;
+                node = child;
+            } else {
+                return prefix && i + common == key.length() ? child : null;
+            }
+        }
+        return node;
+    }
+
+    private static int commonPrefix(String key, int from, String label) {
+        int max = Math.min(key.length() - from, label.length());
+        int i = 0;
+        while (i < max && key.charAt(from + i) == label.charAt(i)) i++;
+        return i;
+    }
+
+    private static void rebuildAll(Node node) {
+        for (Node child : node.children) {
+            rebuildAll(child);
+        }
+        node.rebuild();
+    }
+
+    private static void collect(Node node, List<Suggestion> result) {
+        if (node.terminal != null) result.add(new Suggestion(node.terminal.text, node.terminal.count));
+        for (Node child : node.children) {
+            collect(child, result);
+        }
+    }
+
+    // Orders completions by number of books, then alphabetically
+    private static int rank(Completion a, Completion b) {
+        if (a.count != b.count) return Integer.compare(b.count, a.count);
+        return a.text.compareTo(b.text);
+    }
+
+    private static final class Completion {
+        final String text; // original casing of the first book seen
+        int count;         // books carrying this title or author
+
+        Completion(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Completion[] NO_COMPLETIONS = new Completion[0];
+
+        String label;                    // characters on the edge from the parent, never empty below the root
+        char[] keys = NO_KEYS;           // first character of each child's label, sorted
+        Node[] children = NO_CHILDREN;
+        Completion terminal;             // completion ending at this node, if any
+        Completion[] top = NO_COMPLETIONS;
+        int topSize;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node addChild(Node child) {
+            int insertAt = -Arrays.binarySearch(keys, child.label.charAt(0)) - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            newKeys[insertAt] = child.label.charAt(0);
+            newChildren[insertAt] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(Node child) {
+            int i = Arrays.binarySearch(keys, child.label.charAt(0));
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+            System.arraycopy(children, i + 1, newChildren, i, children.length - i - 1);
+            keys = newKeys.length == 0 ? NO_KEYS : newKeys;
+            children = newChildren.length == 0 ? NO_CHILDREN : newChildren;
+        }
+
+        // Puts a node holding the first at characters of the child's edge between this node and
+        // the child; it has the same completions below it, so it starts with the child's cache
+        Node split(Node child, int at) {
+            Node middle = new Node(child.label.substring(0, at));
+            child.label = child.label.substring(at);
+            middle.keys = new char[] {child.label.charAt(0)};
+            middle.children = new Node[] {child};
+            middle.top = child.top.clone();
+            middle.topSize = child.topSize;
+            children[Arrays.binarySearch(keys, middle.label.charAt(0))] = middle;
+            return middle;
+        }
+
+        // Replaces a child that has no completion of its own and one child by that grandchild
+        void mergeWithOnlyChild(Node child) {
+            Node grandchild = child.children[0];
+            grandchild.label = child.label + grandchild.label;
+            children[Arrays.binarySearch(keys, child.label.charAt(0))] = grandchild;
+        }
+
+        boolean contains(Completion completion) {
+            return indexOf(completion) >= 0;
+        }
+
+        void offer(Completion completion) {
+            int pos = indexOf(completion);
+            if (pos < 0) {
+                if (topSize == MAX_SUGGESTIONS && rank(completion, top[topSize - 1]) >= 0) return;
+                if (topSize == top.length) {
+                    top = Arrays.copyOf(top, Math.min(MAX_SUGGESTIONS, Math.max(2, topSize * 2)));
+                }
+                pos = topSize < MAX_SUGGESTIONS ? topSize++ : topSize - 1;
+                top[pos] = completion;
+            }
+            // Bubble towards the front while it outranks its neighbour
+            while (pos > 0 && rank(top[pos], top[pos - 1]) < 0) {
+                Completion tmp = top[pos - 1];
+                top[pos - 1] = top[pos];
+                top[pos] = tmp;
+                pos--;
+            }
+        }
+
+        void rebuild() {
+            List<Completion> candidates = new ArrayList<>();
+            if (terminal != null) candidates.add(terminal);
+            for (Node child : children) {
+                for (int i = 0; i < child.topSize; i++) {
+                    candidates.add(child.top[i]);
+                }
+            }
+            candidates.sort(AutocompleteTrie::rank);
+            topSize = Math.min(MAX_SUGGESTIONS, candidates.size());
+            top = topSize == 0 ? NO_COMPLETIONS : candidates.subList(0, topSize).toArray(new Completion[0]);
+        }
+
+        private int indexOf(Completion completion) {
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == completion) return i;
+            }
+            return -1;
+        }
+    }
+}
+
+// Autocomplete suggestion with the number of books it covers
+class Suggestion {
+    // Most books first, then alphabetically, as the trie ranks completions
+    static final Comparator<Suggestion> RANKING = Comparator.comparingInt(Suggestion::getBookCount).reversed()
+            .thenComparing(Suggestion::getText);
+
+    private final String text;
+    private final int bookCount;
+
+    public Suggestion(String text, int bookCount) {
+        this.text = text;
+        this.bookCount = bookCount;
+    }
+
+    public String getText() { return text; }
+    public int getBookCount() { return bookCount; }
+}
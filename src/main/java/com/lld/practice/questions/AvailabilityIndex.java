@@ -0,0 +1,36 @@
+package com.lld.practice.questions;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * System-wide index from ISBN to the branches that have copies available right now.
+ *
+ * Libraries publish the new available count of an ISBN while still holding its stripe lock,
+ * so updates for one ISBN in one branch arrive in order and absolute counts never go stale.
+ * Branches with no copies left are dropped from the ISBN's entry.
+ */
+class AvailabilityIndex {
+    private final IsbnMap<Map<String, Integer>> branchCounts; // ISBN -> branch name -> available
+
+    public AvailabilityIndex() {
+        this.branchCounts = new IsbnMap<>();
+    }
+
+    public void update(String branch, Book book, int available) {
+        Map<String, Integer> counts = branchCounts.computeIfAbsent(book, k -> new ConcurrentHashMap<>());
+        if (available > 0) {
+            counts.put(branch, available);
+        } else {
+            counts.remove(branch);
+        }
+    }
+
+    // Branch name -> available copies, only branches that have at least one
+    public Map<String, Integer> availability(String isbn) {
+        Map<String, Integer> counts = branchCounts.get(isbn);
+        return counts != null ? new HashMap<>(counts) : Collections.emptyMap();
+    }
+}
@@ -0,0 +1,175 @@
+package com.lld.practice.questions;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared dictionaries behind the compact Book representation (Bill Pugh singleton).
+ *
+ * - ISBN-13 strings are packed into a long plus a hyphen-position mask
+ * - categories are dictionary-encoded into small int ids, and identical id sets share one array
+ *
+ * Both dictionaries are bounded by the category vocabulary. Per-book sharing lives in
+ * BookFlyweights, which is scoped to a LibrarySystem instead of the process.
+ */
+class BookCatalog {
+    static final long NO_ISBN = -1L;
+    private static final int[] NO_CATEGORIES = new int[0];
+
+    private final Map<String, Integer> categoryIds;
+    private volatile String[] categoryNames; // id -> name, append-only
+    private final Map<CategorySet, int[]> categorySets;
+
+    private BookCatalog() {
+        this.categoryIds = new ConcurrentHashMap<>();
+        this.categoryNames = new String[16];
+        this.categorySets = new ConcurrentHashMap<>();
+    }
+
+    private static class Holder {
+        private static final BookCatalog INSTANCE = new BookCatalog();
+    }
+
+    public static BookCatalog getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public int categoryId(String name) {
+        Integer id = categoryIds.get(name);
+        if (id != null) return id;
+        synchronized (this) {
+            id = categoryIds.get(name);
+            if (id != null) return id;
+
+            int next = categoryIds.size();
+            String[] names = categoryNames;
+            if (next == names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[next] = name.intern();
+            categoryNames = names; // publish the name before the id becomes visible
+            categoryIds.put(names[next], next);
+            return next;
+        }
+    }
+
+    // Looks a category up without registering it, -1 when no book has used the name
+    public int findCategoryId(String name) {
+        Integer id = categoryIds.get(name);
+        return id != null ? id : -1;
+    }
+
+    public String categoryName(int id) {
+        return categoryNames[id];
+    }
+
+    public int categoryCount() {
+        return categoryIds.size();
+    }
+
+    // Encodes the categories and returns the shared array for that exact id sequence
+    public int[] encodeCategories(List<String> categories) {
+        if (categories.isEmpty()) return NO_CATEGORIES;
+        int[] ids = new int[categories.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = categoryId(categories.get(i));
+        }
+        return categorySets.computeIfAbsent(new CategorySet(ids), set -> set.ids);
+    }
+
+    // Packs a 13-digit ISBN (hyphens allowed) into a long, or returns NO_ISBN
+    static long parseIsbn13(String isbn) {
+        if (isbn.length() > 31) return NO_ISBN;
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            } else if (c != '-' || i == 0 || i == isbn.length() - 1) {
+                return NO_ISBN;
+            }
+        }
+        return digits == 13 ? value : NO_ISBN;
+    }
+
+    // Bit i set when character i of the original spelling is a hyphen
+    static int hyphenMask(String isbn) {
+        int mask = 0;
+        for (int i = 0; i < isbn.length(); i++) {
+            if (isbn.charAt(i) == '-') mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    static String formatIsbn13(long value, int hyphenMask) {
+        char[] chars = new char[13 + Integer.bitCount(hyphenMask)];
+        for (int i = chars.length - 1; i >= 0; i--) {
+            if ((hyphenMask & (1 << i)) != 0) {
+                chars[i] = '-';
+            } else {
+                chars[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static final class CategorySet {
+        final int[] ids;
+        final int hash;
+
+        CategorySet(int[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode(ids);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CategorySet && Arrays.equals(ids, ((CategorySet) obj).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
+
+/**
+ * Books shared as flyweights by the libraries of one LibrarySystem, plus one shared string per
+ * author. Owned by the system, so it is released with it rather than growing for the life of
+ * the process.
+ *
+ * Keyed by the primitive ISBN (IsbnMap), at about 16 bytes per book; an author costs one
+ * map entry however many books share it. Titles are not deduplicated: they are nearly all
+ * distinct, so a table entry per title would cost more than it saves.
+ */
+class BookFlyweights {
+    private final IsbnMap<Book> books;
+    private final Map<String, String> authors;
+
+    public BookFlyweights() {
+        this.books = new IsbnMap<>();
+        this.authors = new ConcurrentHashMap<>();
+    }
+
+    // Returns the shared Book for this ISBN if it has the same content, registering it otherwise.
+    // Two libraries registering the same new book at once may each keep their own instance.
+    public Book canonical(Book book) {
+        Book existing = books.get(book);
+        if (existing != null && existing.sameContent(book)) return existing;
+        Book shared = book.withAuthor(authors.computeIfAbsent(book.getAuthor(), author -> author));
+        books.put(shared, shared);
+        return shared;
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    public int authorCount() {
+        return authors.size();
+    }
+}
@@ -0,0 +1,101 @@
+package com.lld.practice.questions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Measures heap bytes per book for the compact Book against the previous layout
+ * (String ISBN, title and author plus a private ArrayList of categories), both on its own and
+ * with the BookFlyweights table a LibrarySystem keeps, so the cost of sharing is counted too.
+ * Everything measured is on the heap; nothing is interned into the JVM's string table.
+ *
+ * Run: mvn exec:java -Dexec.mainClass="com.lld.practice.questions.BookFootprint" -Dexec.args="500000"
+ */
+public class BookFootprint {
+    private static volatile Object retained; // keeps the measured books reachable
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+
+        long legacyBytes = measure(() -> {
+            Object[] books = new Object[count];
+            for (int i = 0; i < count; i++) {
+                books[i] = new LegacyBook(isbn(i), title(i), author(i), categories(i));
+            }
+            return books;
+        });
+        long compactBytes = measure(() -> {
+            Object[] books = new Object[count];
+            for (int i = 0; i < count; i++) {
+                books[i] = new Book(isbn(i), title(i), author(i), categories(i));
+            }
+            return books;
+        });
+        // As a LibrarySystem stores them: registered in its flyweight table, which shares authors
+        long sharedBytes = measure(() -> {
+            BookFlyweights flyweights = new BookFlyweights();
+            Object[] books = new Object[count];
+            for (int i = 0; i < count; i++) {
+                books[i] = flyweights.canonical(new Book(isbn(i), title(i), author(i), categories(i)));
+            }
+            return new Object[] {books, flyweights};
+        });
+
+        System.out.printf("Books measured:                   %,d%n", count);
+        System.out.printf("Legacy bytes per book:             %d%n", legacyBytes / count);
+        System.out.printf("Compact bytes per book:            %d%n", compactBytes / count);
+        System.out.printf("With flyweight table, per book:    %d%n", sharedBytes / count);
+        System.out.printf("Reduction (incl. flyweight table): %.1fx%n", (double) legacyBytes / sharedBytes);
+    }
+
+    // Heap retained by whatever the loader returns, measured around full GCs
+    private static long measure(Supplier<Object> loader) {
+        long before = usedHeap();
+        retained = loader.get();
+        long after = usedHeap();
+        retained = null;
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Synthetic catalog: unique titles, a shared pool of authors and a small category vocabulary
+    private static String isbn(int i) {
+        return "978-" + String.format("%010d", 1_000_000_000L + i);
+    }
+
+    private static String title(int i) {
+        return new String("Collected Works Volume " + i);
+    }
+
+    private static String author(int i) {
+        return new String("Author Number " + (i % 5_000));
+    }
+
+    private static List<String> categories(int i) {
+        return Arrays.asList(new String("Category " + (i % 40)), new String("Category " + (i % 7)));
+    }
+
+    // The previous Book layout, kept here only as the measurement baseline
+    private static final class LegacyBook {
+        private final String isbn;
+        private final String title;
+        private final String author;
+        private final List<String> categories;
+
+        LegacyBook(String isbn, String title, String author, List<String> categories) {
+            this.isbn = isbn;
+            this.title = title;
+            this.author = author;
+            this.categories = new ArrayList<>(categories);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.lld.practice.questions;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index for Library search.
+ * Maps normalized tokens of title, author and categories to posting lists of ISBNs,
+ * so a lookup costs roughly the size of the posting lists instead of the catalog.
+ */
+class BookSearchIndex {
+    // Per query token, the best field it hits decides its weight
+    static final int TITLE_WEIGHT = 4;
+    static final int AUTHOR_WEIGHT = 2;
+    static final int CATEGORY_WEIGHT = 1;
+
+    private final Map<String, Set<String>> postings; // token -> ISBNs
+
+    public BookSearchIndex() {
+        this.postings = new ConcurrentHashMap<>();
+    }
+
+    public void add(String isbn, Book book) {
+        for (String token : tokensOf(book)) {
+            postings.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(isbn);
+        }
+    }
+
+    // Bulk load: collects every posting first, then fills each token's set once at its final size
+    public void addAll(List<String> isbns, List<Book> books) {
+        Map<String, List<String>> collected = new HashMap<>();
+        for (int i = 0; i < books.size(); i++) {
+            for (String token : tokensOf(books.get(i))) {
+                collected.computeIfAbsent(token, t -> new ArrayList<>()).add(isbns.get(i));
+            }
+        }
+        collected.forEach((token, tokenIsbns) ->
+                postings.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet(tokenIsbns.size())).addAll(tokenIsbns));
+    }
+
+    public void remove(String isbn, Book book) {
+        for (String token : tokensOf(book)) {
+            Set<String> isbns = postings.get(token);
+            if (isbns != null) {
+                isbns.remove(isbn);
+            }
+        }
+    }
+
+    // ISBNs of books containing every token of the query
+    public Set<String> lookup(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) return Collections.emptySet();
+
+        // Start from the shortest posting list so the intersection stays small
+        List<Set<String>> lists = new ArrayList<>(queryTokens.size());
+        for (String token : queryTokens) {
+            Set<String> isbns = postings.get(token);
+            if (isbns == null || isbns.isEmpty()) return Collections.emptySet();
+            lists.add(isbns);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        Set<String> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    // Same matches as lookup, produced lazily: walks the shortest posting list and probes the others
+    public Stream<String> stream(String query) {
+        List<String> queryTokens = tokenize(query);
+        if (queryTokens.isEmpty()) return Stream.empty();
+
+        List<Set<String>> lists = new ArrayList<>(queryTokens.size());
+        for (String token : queryTokens) {
+            Set<String> isbns = postings.get(token);
+            if (isbns == null || isbns.isEmpty()) return Stream.empty();
+            lists.add(isbns);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        List<Set<String>> others = lists.subList(1, lists.size());
+        return lists.get(0).stream().filter(isbn -> {
+            for (Set<String> other : others) {
+                if (!other.contains(isbn)) return false;
+            }
+            return true;
+        });
+    }
+
+    // Sum over query tokens of the weight of the best field containing each one
+    static int score(Book book, List<String> queryTokens) {
+        List<String> title = tokenize(book.getTitle());
+        List<String> author = tokenize(book.getAuthor());
+        int score = 0;
+        for (String token : queryTokens) {
+            if (title.contains(token)) {
+                score += TITLE_WEIGHT;
+            } else if (author.contains(token)) {
+                score += AUTHOR_WEIGHT;
+            } else {
+                score += CATEGORY_WEIGHT;
+            }
+        }
+        return score;
+    }
+
+    static Set<String> tokensOf(Book book) {
+        Set<String> tokens = new HashSet<>(tokenize(book.getTitle()));
+        tokens.addAll(tokenize(book.getAuthor()));
+        for (String category : book.getCategories()) {
+            tokens.addAll(tokenize(category));
+        }
+        return tokens;
+    }
+
+    // Lower-cases and splits on anything that is not a letter or digit
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
+
+class ScoredBook {
+    // Best first; equal scores fall back to ISBN so pages are stable
+    static final Comparator<ScoredBook> RANKING = Comparator.comparingInt(ScoredBook::getScore).reversed()
+            .thenComparing(ScoredBook::getBook, Book::compareIsbn);
+
+    private final Book book;
+    private final int score;
+
+    public ScoredBook(Book book, int score) {
+        this.book = book;
+        this.score = score;
+    }
+
+    public Book getBook() { return book; }
+    public int getScore() { return score; }
+}
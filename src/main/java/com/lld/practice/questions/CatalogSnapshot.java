@@ -0,0 +1,282 @@
+package com.lld.practice.questions;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Immutable, versioned view of a library's books and available copy counts.
+ *
+ * Stored as a persistent hash array mapped trie: nodes of up to 32 slots indexed by five hash
+ * bits per level, each slot an immutable per-ISBN entry or a child node. A new version copies
+ * only the nodes on the paths to the changed entries, about log32(n) small arrays each, and
+ * shares everything else with the previous version. Nodes are never modified once their
+ * version is published, so any number of readers can use a version without locking.
+ */
+final class CatalogSnapshot {
+    private static final int BITS = 5;
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(0, new Node(null, 0, new Object[0]), 0);
+
+    private final long version;
+    private final Node root;
+    private final int size;
+
+    private CatalogSnapshot(long version, Node root, int size) {
+        this.version = version;
+        this.root = root;
+        this.size = size;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Book getBook(String isbn) {
+        Entry entry = entryOf(isbn);
+        return entry != null ? entry.book : null;
+    }
+
+    public int getAvailableCopies(String isbn) {
+        Entry entry = entryOf(isbn);
+        return entry != null ? entry.available : 0;
+    }
+
+    public boolean isAvailable(String isbn) {
+        return getAvailableCopies(isbn) > 0;
+    }
+
+    public List<Book> getBooks() {
+        List<Book> books = new ArrayList<>(size);
+        collect(root, books);
+        return books;
+    }
+
+    // The next version: this one with the batch's entries, in order, replacing those of the same ISBN
+    CatalogSnapshot apply(long nextVersion, Collection<Entry> batch) {
+        Builder builder = new Builder(root, size);
+        for (Entry entry : batch) {
+            builder.put(entry);
+        }
+        return new CatalogSnapshot(nextVersion, builder.root, builder.size);
+    }
+
+    // Parses the ISBN like IsbnMap, so hyphenation variants find the same entry without boxing a key
+    private Entry entryOf(String isbn) {
+        long numeric = BookCatalog.parseIsbn13(isbn);
+        String text = numeric == BookCatalog.NO_ISBN ? isbn : null;
+        int hash = hashOf(text != null ? text.hashCode() : Long.hashCode(numeric));
+
+        Object slot = root;
+        for (int shift = 0; slot instanceof Node; shift += BITS) {
+            Node node = (Node) slot;
+            int bit = bitAt(hash, shift);
+            if ((node.bitmap & bit) == 0) return null;
+            slot = node.slots[node.index(bit)];
+        }
+        for (Entry entry = (Entry) slot; entry != null; entry = entry.next) {
+            if (entry.book.hasIsbn(numeric, text)) return entry;
+        }
+        return null;
+    }
+
+    private static void collect(Node node, List<Book> books) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Node) {
+                collect((Node) slot, books);
+            } else {
+                for (Entry entry = (Entry) slot; entry != null; entry = entry.next) {
+                    books.add(entry.book);
+                }
+            }
+        }
+    }
+
+    // Book.hashCode is the ISBN's hash; the murmur3 finalizer spreads it over every level
+    private static int hashOf(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int bitAt(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    // Available copies of one ISBN in one version; entries whose full hashes collide are chained
+    static final class Entry {
+        final Book book;
+        final int available;
+        final Entry next;
+
+        Entry(Book book, int available) {
+            this(book, available, null);
+        }
+
+        private Entry(Book book, int available, Entry next) {
+            this.book = book;
+            this.available = available;
+            this.next = next;
+        }
+    }
+
+    private static final class Node {
+        final Object edit; // token of the Builder that created it; only that Builder, before publishing, modifies it
+        int bitmap;        // bit i set when slot for hash bits i is present
+        Object[] slots;    // Entry or Node per set bit, in bit order
+
+        Node(Object edit, int bitmap, Object[] slots) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * Builds one version. Nodes it creates are tagged with its edit token and updated in place by
+     * later entries of the same batch; shared nodes of the previous version are copied first.
+     */
+    private static final class Builder {
+        private final Object edit = new Object();
+        Node root;
+        int size;
+
+        Builder(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        void put(Entry entry) {
+            root = put(root, entry, hashOf(entry.book.hashCode()), 0);
+        }
+
+        private Node put(Node node, Entry entry, int hash, int shift) {
+            int bit = bitAt(hash, shift);
+            int index = node.index(bit);
+            if ((node.bitmap & bit) == 0) {
+                size++;
+                Object[] slots = new Object[node.slots.length + 1];
+                System.arraycopy(node.slots, 0, slots, 0, index);
+                slots[index] = entry;
+                System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+                Node target = editable(node);
+                target.bitmap |= bit;
+                target.slots = slots;
+                return target;
+            }
+
+            Object slot = node.slots[index];
+            Object replacement;
+            if (slot instanceof Node) {
+                replacement = put((Node) slot, entry, hash, shift + BITS);
+            } else {
+                Entry existing = (Entry) slot;
+                int existingHash = hashOf(existing.book.hashCode());
+                if (existingHash == hash) {
+                    replacement = chain(existing, entry);
+                } else {
+                    size++;
+                    replacement = pair(existing, existingHash, entry, hash, shift + BITS);
+                }
+            }
+            if (replacement == slot) return node;
+            Node target = editable(node);
+            target.slots[index] = replacement;
+            return target;
+        }
+
+        // Replaces the entry of the same ISBN in a chain of equal hashes, or prepends a new one
+        private Entry chain(Entry head, Entry entry) {
+            Entry rest = null;
+            boolean replaced = false;
+            for (Entry e = head; e != null; e = e.next) {
+                if (e.book.equals(entry.book)) {
+                    replaced = true;
+                } else {
+                    rest = new Entry(e.book, e.available, rest);
+                }
+            }
+            if (!replaced) size++;
+            return rest == null ? entry : new Entry(entry.book, entry.available, rest);
+        }
+
+        // A node holding two entries whose hashes differ, deep enough for their bits to differ
+        private Node pair(Entry a, int hashA, Entry b, int hashB, int shift) {
+            int bitA = bitAt(hashA, shift);
+            int bitB = bitAt(hashB, shift);
+            if (bitA == bitB) {
+                return new Node(edit, bitA, new Object[] {pair(a, hashA, b, hashB, shift + BITS)});
+            }
+            Object[] slots = Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[] {a, b} : new Object[] {b, a};
+            return new Node(edit, bitA | bitB, slots);
+        }
+
+        private Node editable(Node node) {
+            return node.edit == edit ? node : new Node(edit, node.bitmap, node.slots.clone());
+        }
+    }
+}
+
+/**
+ * Collects catalog changes from writers and publishes them as new CatalogSnapshot versions.
+ *
+ * Writers stage the new state of an ISBN while holding its stripe and return without waiting.
+ * Publishing is reader-driven: the first reader to find unpublished changes takes the publish
+ * lock and drains every staged change into one new version, and readers queued behind it
+ * usually find that version already covers them. Bursts of writes are therefore batched into
+ * one version, and a thread still reads its own writes, since its staged change is counted
+ * before it reads.
+ */
+class CatalogPublisher {
+    private final Queue<CatalogSnapshot.Entry> staged; // unpublished entries, in staging order
+    private final AtomicLong stagedCount;
+    private final ReentrantLock publishing;
+    private volatile CatalogSnapshot current;
+
+    public CatalogPublisher() {
+        this.staged = new ConcurrentLinkedQueue<>();
+        this.stagedCount = new AtomicLong();
+        this.publishing = new ReentrantLock();
+        this.current = CatalogSnapshot.EMPTY;
+    }
+
+    // A version including every change staged before the call; lock-free unless changes are pending
+    public CatalogSnapshot current() {
+        CatalogSnapshot snapshot = current;
+        if (snapshot.getVersion() >= stagedCount.get()) return snapshot;
+        publishing.lock();
+        try {
+            if (current.getVersion() < stagedCount.get()) publishBatch();
+            return current;
+        } finally {
+            publishing.unlock();
+        }
+    }
+
+    // Called with the ISBN's stripe held, so the staged entries of one ISBN are queued in order
+    public void stage(Book book, int available) {
+        staged.add(new CatalogSnapshot.Entry(book, available));
+        stagedCount.incrementAndGet(); // after the add, so a version covering this count includes it
+    }
+
+    // Versions are numbered by staged changes, so consecutive versions may skip numbers
+    private void publishBatch() {
+        long version = stagedCount.get(); // every change counted here is already queued
+        List<CatalogSnapshot.Entry> batch = new ArrayList<>();
+        for (CatalogSnapshot.Entry entry; (entry = staged.poll()) != null; ) {
+            batch.add(entry);
+        }
+        current = current.apply(version, batch);
+    }
+}
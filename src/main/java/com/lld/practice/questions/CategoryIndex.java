@@ -0,0 +1,129 @@
+package com.lld.practice.questions;
+
+import java.util.*;
+
+/**
+ * Per-category bitmaps over dense book ids, for boolean category filters and facet counts.
+ *
+ * Each ISBN gets the next small int the first time the library sees it and keeps it when the
+ * book is replaced, so the bitmaps stay dense and compress well. A filter is a few bitmap
+ * AND/OR/ANDNOT operations, and a facet count is one intersection cardinality per category;
+ * neither looks at a Book until the matching ids are decoded.
+ *
+ * Guarded by its own monitor: writes only come from addBook, and queries are short.
+ */
+class CategoryIndex {
+    private final IsbnMap<Integer> ids; // ISBN -> dense id
+    private Book[] booksById;
+    private int nextId;
+    private RoaringBitmap[] byCategory; // BookCatalog category id -> books in it, null when none yet
+    private final RoaringBitmap allBooks;
+
+    public CategoryIndex() {
+        this.ids = new IsbnMap<>();
+        this.booksById = new Book[64];
+        this.byCategory = new RoaringBitmap[16];
+        this.allBooks = new RoaringBitmap();
+    }
+
+    // Indexes the book, replacing the categories of the previous book with this ISBN if any
+    public synchronized void add(Book book, Book previous) {
+        Integer id = ids.get(book);
+        if (id == null) {
+            id = nextId++;
+            ids.put(book, id);
+            if (id == booksById.length) {
+                booksById = Arrays.copyOf(booksById, id * 2);
+            }
+            allBooks.add(id);
+        }
+        if (previous != null) {
+            for (int category : previous.getCategoryIds()) {
+                byCategory[category].remove(id);
+            }
+        }
+        for (int category : book.getCategoryIds()) {
+            bitmapOf(category).add(id);
+        }
+        booksById[id] = book;
+    }
+
+    // Bulk load of books not indexed yet, under one acquisition of the monitor
+    public synchronized void addAll(List<Book> books) {
+        for (Book book : books) {
+            add(book, null);
+        }
+    }
+
+    public synchronized List<Book> query(CategoryQuery query) {
+        List<Book> result = new ArrayList<>();
+        match(query).forEach(id -> result.add(booksById[id]));
+        return result;
+    }
+
+    // Category name -> number of matching books in it, largest first; categories with none are left out
+    public synchronized Map<String, Integer> facets(CategoryQuery query) {
+        RoaringBitmap matches = match(query);
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+        BookCatalog catalog = BookCatalog.getInstance();
+        for (int category = 0; category < byCategory.length; category++) {
+            if (byCategory[category] == null) continue;
+            int count = RoaringBitmap.andCardinality(matches, byCategory[category]);
+            if (count > 0) counts.add(Map.entry(catalog.categoryName(category), count));
+        }
+        counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+        Map<String, Integer> facets = new LinkedHashMap<>();
+        counts.forEach(entry -> facets.put(entry.getKey(), entry.getValue()));
+        return facets;
+    }
+
+    private RoaringBitmap match(CategoryQuery query) {
+        RoaringBitmap result = allBooks;
+        for (String category : query.getAllOf()) {
+            result = RoaringBitmap.and(result, existing(category));
+        }
+        if (!query.getAnyOf().isEmpty()) {
+            RoaringBitmap any = new RoaringBitmap();
+            for (String category : query.getAnyOf()) {
+                any = RoaringBitmap.or(any, existing(category));
+            }
+            result = RoaringBitmap.and(result, any);
+        }
+        for (String category : query.getNoneOf()) {
+            result = RoaringBitmap.andNot(result, existing(category));
+        }
+        return result;
+    }
+
+    // Unknown categories match nothing and are not registered in the shared dictionary
+    private RoaringBitmap existing(String category) {
+        int id = BookCatalog.getInstance().findCategoryId(category);
+        return id >= 0 && id < byCategory.length && byCategory[id] != null ? byCategory[id] : new RoaringBitmap();
+    }
+
+    private RoaringBitmap bitmapOf(int category) {
+        if (category >= byCategory.length) {
+            byCategory = Arrays.copyOf(byCategory, Math.max(category + 1, byCategory.length * 2));
+        }
+        if (byCategory[category] == null) {
+            byCategory[category] = new RoaringBitmap();
+        }
+        return byCategory[category];
+    }
+}
+
+// Boolean category filter: every allOf category, at least one anyOf category (if given), no noneOf category
+class CategoryQuery {
+    private final Set<String> allOf = new LinkedHashSet<>();
+    private final Set<String> anyOf = new LinkedHashSet<>();
+    private final Set<String> noneOf = new LinkedHashSet<>();
+
+    CategoryQuery allOf(String... categories) { allOf.addAll(List.of(categories)); return this; }
+    CategoryQuery anyOf(String... categories) { anyOf.addAll(List.of(categories)); return this; }
+    CategoryQuery noneOf(String... categories) { noneOf.addAll(List.of(categories)); return this; }
+
+    public Set<String> getAllOf() { return allOf; }
+    public Set<String> getAnyOf() { return anyOf; }
+    public Set<String> getNoneOf() { return noneOf; }
+}
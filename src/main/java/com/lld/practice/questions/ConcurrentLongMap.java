@@ -0,0 +1,266 @@
+package com.lld.practice.questions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * Concurrent hash map from non-negative long keys to object values.
+ *
+ * Entries live in open-addressing tables (parallel long[] keys and Object[] values with
+ * linear probing), split into segments. Writers take the segment's write lock; readers
+ * probe optimistically and only fall back to the read lock if a writer interfered.
+ * No per-entry node objects and no boxed keys.
+ */
+class ConcurrentLongMap<V> {
+    private static final long EMPTY = -1L;
+    private static final int SEGMENTS = 32; // power of two
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final Segment[] segments;
+
+    public ConcurrentLongMap() {
+        this(16);
+    }
+
+    public ConcurrentLongMap(int expectedSize) {
+        int perSegment = Math.max(4, (int) (expectedSize / SEGMENTS / LOAD_FACTOR) + 1);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(tableSizeFor(perSegment));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long hash = mix(key);
+        return (V) segmentFor(hash).get(key, hash);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        checkKey(key);
+        long hash = mix(key);
+        return (V) segmentFor(hash).put(key, hash, value, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(long key, V value) {
+        checkKey(key);
+        long hash = mix(key);
+        return (V) segmentFor(hash).put(key, hash, value, true);
+    }
+
+    // The function runs under the segment's write lock, so it must be cheap and must not touch this map
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long key, LongFunction<? extends V> function) {
+        V existing = get(key);
+        if (existing != null) return existing;
+        checkKey(key);
+        long hash = mix(key);
+        return (V) segmentFor(hash).computeIfAbsent(key, hash, function);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        long hash = mix(key);
+        return (V) segmentFor(hash).remove(key, hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // Point-in-time copy of the values, segment by segment
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> values = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.collectValues((List<Object>) values);
+        }
+        return values;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 59) & (SEGMENTS - 1)];
+    }
+
+    private static void checkKey(long key) {
+        if (key < 0) throw new IllegalArgumentException("Keys must be non-negative: " + key);
+    }
+
+    // murmur3 finalizer: spreads sequential ISBNs over segments and slots
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            Arrays.fill(keys, EMPTY);
+        }
+
+        // Slot holding the key, or -(empty slot + 1) where it would go
+        int indexOf(long key, long hash) {
+            int mask = keys.length - 1;
+            int i = (int) hash & mask;
+            for (int probes = 0; probes < keys.length; probes++) {
+                long k = keys[i];
+                if (k == key) return i;
+                if (k == EMPTY) return -i - 1;
+                i = (i + 1) & mask;
+            }
+            return Integer.MIN_VALUE; // only reachable on a torn optimistic read
+        }
+    }
+
+    private static final class Segment extends StampedLock {
+        private Table table;
+        private int size;
+
+        Segment(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        Object get(long key, long hash) {
+            long stamp = tryOptimisticRead();
+            Table t = table;
+            int i = t.indexOf(key, hash);
+            Object value = i >= 0 ? t.values[i] : null;
+            if (validate(stamp)) return value;
+
+            stamp = readLock();
+            try {
+                t = table;
+                i = t.indexOf(key, hash);
+                return i >= 0 ? t.values[i] : null;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        Object put(long key, long hash, Object value, boolean onlyIfAbsent) {
+            long stamp = writeLock();
+            try {
+                int i = table.indexOf(key, hash);
+                if (i >= 0) {
+                    Object previous = table.values[i];
+                    if (!onlyIfAbsent) table.values[i] = value;
+                    return previous;
+                }
+                insert(-i - 1, key, hash, value);
+                return null;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        Object computeIfAbsent(long key, long hash, LongFunction<?> function) {
+            long stamp = writeLock();
+            try {
+                int i = table.indexOf(key, hash);
+                if (i >= 0) return table.values[i];
+                Object value = function.apply(key);
+                if (value != null) insert(-i - 1, key, hash, value);
+                return value;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        Object remove(long key, long hash) {
+            long stamp = writeLock();
+            try {
+                long[] keys = table.keys;
+                Object[] values = table.values;
+                int i = table.indexOf(key, hash);
+                if (i < 0) return null;
+                Object previous = values[i];
+
+                // Backward-shift deletion keeps probe chains intact without tombstones
+                int mask = keys.length - 1;
+                int j = i;
+                while (true) {
+                    j = (j + 1) & mask;
+                    if (keys[j] == EMPTY) break;
+                    int ideal = (int) mix(keys[j]) & mask;
+                    boolean between = i <= j ? (i < ideal && ideal <= j) : (i < ideal || ideal <= j);
+                    if (!between) {
+                        keys[i] = keys[j];
+                        values[i] = values[j];
+                        i = j;
+                    }
+                }
+                keys[i] = EMPTY;
+                values[i] = null;
+                size--;
+                return previous;
+            } finally {
+                unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = readLock();
+            try {
+                return size;
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        void collectValues(List<Object> into) {
+            long stamp = readLock();
+            try {
+                for (Object value : table.values) {
+                    if (value != null) into.add(value);
+                }
+            } finally {
+                unlockRead(stamp);
+            }
+        }
+
+        private void insert(int slot, long key, long hash, Object value) {
+            if (size + 1 > table.keys.length * LOAD_FACTOR) {
+                resize();
+                slot = -table.indexOf(key, hash) - 1;
+            }
+            table.values[slot] = value;
+            table.keys[slot] = key;
+            size++;
+        }
+
+        private void resize() {
+            Table old = table;
+            Table grown = new Table(old.keys.length * 2);
+            for (int i = 0; i < old.keys.length; i++) {
+                long k = old.keys[i];
+                if (k != EMPTY) {
+                    int slot = -grown.indexOf(k, mix(k)) - 1;
+                    grown.keys[slot] = k;
+                    grown.values[slot] = old.values[i];
+                }
+            }
+            table = grown;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.lld.practice.questions;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Active loans bucketed by due date (epoch day).
+ * Range queries only visit the buckets inside the range, so "overdue as of D" and
+ * "due in the next N days" cost time proportional to the loans they return.
+ */
+class DueDateIndex {
+    private final ConcurrentSkipListMap<Long, Bucket> buckets; // epoch day -> loans due that day
+
+    public DueDateIndex() {
+        this.buckets = new ConcurrentSkipListMap<>();
+    }
+
+    public void add(BorrowRecord record) {
+        long day = record.getDueDate().toEpochDay();
+        while (true) {
+            Bucket bucket = buckets.computeIfAbsent(day, d -> new Bucket());
+            if (bucket.add(record)) return;
+            buckets.remove(day, bucket); // retired by a concurrent remove; help unlink it and retry
+        }
+    }
+
+    // Empty buckets are unlinked here, never by readers, so a query cannot race a loan out of the index
+    public void remove(BorrowRecord record) {
+        long day = record.getDueDate().toEpochDay();
+        Bucket bucket = buckets.get(day);
+        if (bucket != null && bucket.remove(record)) {
+            buckets.remove(day, bucket);
+        }
+    }
+
+    public List<BorrowRecord> all() {
+        return collect(buckets);
+    }
+
+    // Loans due strictly before the given date, earliest first
+    public List<BorrowRecord> overdueAsOf(LocalDate date) {
+        return collect(buckets.headMap(date.toEpochDay(), false));
+    }
+
+    // Loans due between the two dates, both inclusive, earliest first
+    public List<BorrowRecord> dueBetween(LocalDate from, LocalDate to) {
+        return collect(buckets.subMap(from.toEpochDay(), true, to.toEpochDay(), true));
+    }
+
+    // Read-only: every loan sits in exactly one bucket, so it is counted once or, if it is being returned, not at all
+    private static List<BorrowRecord> collect(ConcurrentNavigableMap<Long, Bucket> range) {
+        List<BorrowRecord> result = new ArrayList<>();
+        for (Bucket bucket : range.values()) {
+            result.addAll(bucket.records);
+        }
+        return result;
+    }
+
+    // A day's loans plus a reference count. The count reaching zero retires the bucket for good,
+    // so an add can never land in a bucket that is being unlinked.
+    private static final class Bucket {
+        private static final int RETIRED = -1;
+
+        final Set<BorrowRecord> records = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger count = new AtomicInteger();
+
+        // False if the bucket was retired; the caller must use a fresh one
+        boolean add(BorrowRecord record) {
+            int current;
+            do {
+                current = count.get();
+                if (current == RETIRED) return false;
+            } while (!count.compareAndSet(current, current + 1));
+            records.add(record);
+            return true;
+        }
+
+        // True if this removal emptied and retired the bucket
+        boolean remove(BorrowRecord record) {
+            if (!records.remove(record)) return false;
+            return count.decrementAndGet() == 0 && count.compareAndSet(0, RETIRED);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.lld.practice.questions;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Multi-producer, single-consumer ring buffer of library events, drained to sinks by a
+ * background daemon thread.
+ *
+ * Publishing claims a sequence with a CAS, fills the pre-allocated slot and marks it
+ * published: no locks, no allocation, no I/O on the caller's thread. When the ring is full
+ * the event is dropped and counted rather than blocking the caller. An idle consumer parks
+ * until a producer unparks it, so a quiet pipeline costs no CPU; close() stops the thread.
+ * Libraries start with the discarding pipeline, which has neither ring nor thread.
+ */
+class EventPipeline implements AutoCloseable {
+    static final int DEFAULT_CAPACITY = 4096; // power of two
+    private static final long FLUSH_POLL_NANOS = 50_000;
+
+    private final LibraryEvent[] slots;
+    private final AtomicLongArray published; // slot -> sequence it currently holds, -1 before first use
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();   // next sequence to hand out
+    private final AtomicLong consumed = new AtomicLong();  // next sequence to deliver
+    private final AtomicLong flushed = new AtomicLong();   // sequences below this have passed endOfBatch
+    private final AtomicLong dropped = new AtomicLong();
+    private final List<EventSink> sinks;
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private volatile boolean sleeping; // consumer is parked, or about to park, waiting for events
+
+    public EventPipeline(List<EventSink> sinks) {
+        this(DEFAULT_CAPACITY, sinks);
+    }
+
+    public EventPipeline(int capacity, List<EventSink> sinks) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new LibraryEvent[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new LibraryEvent();
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.sinks = List.copyOf(sinks);
+        this.consumer = new Thread(this::drainLoop, "library-events");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    // Accepts and discards every event; the default for libraries that were not given a pipeline
+    private static final EventPipeline DISCARDING = new EventPipeline();
+
+    private EventPipeline() {
+        this.slots = new LibraryEvent[0];
+        this.published = new AtomicLongArray(0);
+        this.mask = 0;
+        this.sinks = List.of();
+        this.consumer = null;
+    }
+
+    public static EventPipeline discarding() {
+        return DISCARDING;
+    }
+
+    // Shared console pipeline, created on first use (Bill Pugh holder)
+    private static class ConsoleHolder {
+        private static final EventPipeline INSTANCE = new EventPipeline(List.of(EventSinks.console()));
+    }
+
+    public static EventPipeline console() {
+        return ConsoleHolder.INSTANCE;
+    }
+
+    // Returns false if the ring was full or the pipeline closed and the event was dropped
+    public boolean publish(EventType type, String library, String isbn, String userId,
+                           String title, LoanOutcome reason, double fine) {
+        if (consumer == null) return true; // discarding
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (!running || sequence - consumed.get() >= slots.length) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        slots[index].set(type, System.currentTimeMillis(), library, isbn, userId, title, reason, fine);
+        // A volatile write, not lazySet: it must be ordered before the read of sleeping, or the
+        // consumer could park after missing this event while we miss its sleeping flag
+        published.set(index, sequence);
+        if (sleeping) LockSupport.unpark(consumer);
+        return true;
+    }
+
+    public long getDeliveredCount() {
+        return consumed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Waits until every event claimed before this call has reached the sinks and been flushed by them
+    public void flush() {
+        long target = claimed.get();
+        while (flushed.get() < target && consumer != null && consumer.isAlive()) {
+            LockSupport.parkNanos(FLUSH_POLL_NANOS);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (consumer == null) return; // the discarding pipeline is shared and has nothing to stop
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sinks.forEach(EventSink::close);
+    }
+
+    private void drainLoop() {
+        boolean delivered = false;
+        while (true) {
+            long sequence = consumed.get();
+            int index = (int) sequence & mask;
+            if (published.get(index) == sequence) {
+                deliver(slots[index]);
+                consumed.lazySet(sequence + 1);
+                delivered = true;
+                continue;
+            }
+            if (delivered) {
+                sinks.forEach(sink -> guarded(sink::endOfBatch));
+                flushed.set(sequence);
+                delivered = false;
+            }
+            // Stop only once every claimed event has been delivered
+            if (!running && sequence == claimed.get()) return;
+            
+            // Announce the park, then look once more: a producer either sees the flag or its event is seen here
+            sleeping = true;
+            if (published.get(index) != sequence && (running || sequence != claimed.get())) {
+                LockSupport.park(this);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void deliver(LibraryEvent event) {
+        for (EventSink sink : sinks) {
+            guarded(() -> sink.accept(event));
+        }
+    }
+
+    // A failing sink must not stop delivery to the others or kill the consumer
+    private static void guarded(Runnable sinkCall) {
+        try {
+            sinkCall.run();
+        } catch (RuntimeException e) {
+            System.err.println("Event sink failed: " + e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.lld.practice.questions;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Built-in event sinks: console, append-only file and in-memory.
+ */
+final class EventSinks {
+    private EventSinks() {
+    }
+
+    public static EventSink console() {
+        return event -> System.out.println(event.describe());
+    }
+
+    public static EventSink file(Path path) {
+        return new FileEventSink(path);
+    }
+
+    public static InMemoryEventSink inMemory() {
+        return new InMemoryEventSink();
+    }
+}
+
+// One line per event, flushed whenever the consumer catches up
+class FileEventSink implements EventSink {
+    private final BufferedWriter writer;
+
+    public FileEventSink(Path path) {
+        try {
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open event log " + path, e);
+        }
+    }
+
+    @Override
+    public void accept(LibraryEvent event) {
+        try {
+            writer.write(event.toString());
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void endOfBatch() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
+
+// Keeps copies of every event, mainly for tests and diagnostics
+class InMemoryEventSink implements EventSink {
+    private final List<LibraryEvent> events = new ArrayList<>();
+
+    @Override
+    public synchronized void accept(LibraryEvent event) {
+        events.add(event.copy());
+    }
+
+    public synchronized List<LibraryEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+}
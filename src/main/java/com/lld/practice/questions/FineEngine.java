@@ -0,0 +1,98 @@
+package com.lld.practice.questions;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk fine computation for the nightly run.
+ * Loans are flattened into primitive arrays once, then fines for every loan are
+ * computed in a single loop with no virtual dispatch and no LocalDate allocation.
+ * Results match User.calculateFine exactly for the same check date.
+ */
+class FineEngine {
+    private static final long NOT_RETURNED = Long.MIN_VALUE;
+
+    private final int size;
+    private final long[] dueEpochDays;
+    private final long[] returnEpochDays; // NOT_RETURNED while still on loan
+    private final byte[] rateClasses;     // index into finePerDay
+    private final double[] finePerDay;    // one entry per distinct user rate
+
+    private FineEngine(int size, long[] dueEpochDays, long[] returnEpochDays, byte[] rateClasses, double[] finePerDay) {
+        this.size = size;
+        this.dueEpochDays = dueEpochDays;
+        this.returnEpochDays = returnEpochDays;
+        this.rateClasses = rateClasses;
+        this.finePerDay = finePerDay;
+    }
+
+    public static FineEngine of(Collection<BorrowRecord> records) {
+        int size = records.size();
+        long[] dueEpochDays = new long[size];
+        long[] returnEpochDays = new long[size];
+        byte[] rateClasses = new byte[size];
+        List<Double> rates = new ArrayList<>();
+
+        int i = 0;
+        for (BorrowRecord record : records) {
+            dueEpochDays[i] = record.getDueDate().toEpochDay();
+            returnEpochDays[i] = record.getReturnDate() != null ? record.getReturnDate().toEpochDay() : NOT_RETURNED;
+            double rate = record.getUser().getFinePerDay();
+            int rateClass = rates.indexOf(rate);
+            if (rateClass < 0) {
+                if (rates.size() == Byte.MAX_VALUE) {
+                    throw new IllegalArgumentException("Too many distinct fine rates");
+                }
+                rates.add(rate);
+                rateClass = rates.size() - 1;
+            }
+            rateClasses[i] = (byte) rateClass;
+            i++;
+        }
+
+        double[] finePerDay = new double[rates.size()];
+        for (int r = 0; r < finePerDay.length; r++) {
+            finePerDay[r] = rates.get(r);
+        }
+        return new FineEngine(size, dueEpochDays, returnEpochDays, rateClasses, finePerDay);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Fine per loan, in the order the records were given, as of the check date
+    public double[] computeFines(LocalDate asOf) {
+        return computeFines(asOf, false);
+    }
+
+    public double[] computeFines(LocalDate asOf, boolean parallel) {
+        long asOfDay = asOf.toEpochDay();
+        double[] fines = new double[size];
+        if (parallel) {
+            IntStream.range(0, size).parallel().forEach(i -> fines[i] = fineAt(i, asOfDay));
+        } else {
+            for (int i = 0; i < size; i++) {
+                fines[i] = fineAt(i, asOfDay);
+            }
+        }
+        return fines;
+    }
+
+    public double totalFines(LocalDate asOf) {
+        long asOfDay = asOf.toEpochDay();
+        double total = 0.0;
+        for (int i = 0; i < size; i++) {
+            total += fineAt(i, asOfDay);
+        }
+        return total;
+    }
+
+    // Same rule as BorrowRecord.getDaysOverdue and User.calculateFine
+    private double fineAt(int i, long asOfDay) {
+        long checkDay = returnEpochDays[i] != NOT_RETURNED ? returnEpochDays[i] : asOfDay;
+        long daysOverdue = checkDay > dueEpochDays[i] ? checkDay - dueEpochDays[i] : 0;
+        return daysOverdue > 0 ? daysOverdue * finePerDay[rateClasses[i]] : 0.0;
+    }
+}
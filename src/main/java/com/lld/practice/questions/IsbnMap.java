@@ -0,0 +1,78 @@
+package com.lld.practice.questions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Concurrent map keyed by ISBN string.
+ * 13-digit ISBNs are parsed into a long and stored in a ConcurrentLongMap, so lookups hash
+ * a primitive and entries carry no node or key-string overhead. Anything else falls back to
+ * a ConcurrentHashMap. Spellings of one ISBN with different hyphenation share an entry.
+ */
+class IsbnMap<V> {
+    private final ConcurrentLongMap<V> numeric;
+    private final Map<String, V> text;
+
+    public IsbnMap() {
+        this.numeric = new ConcurrentLongMap<>();
+        this.text = new ConcurrentHashMap<>();
+    }
+
+    public V get(String isbn) {
+        long key = BookCatalog.parseIsbn13(isbn);
+        return key != BookCatalog.NO_ISBN ? numeric.get(key) : text.get(isbn);
+    }
+
+    public boolean containsKey(String isbn) {
+        return get(isbn) != null;
+    }
+
+    public V put(String isbn, V value) {
+        long key = BookCatalog.parseIsbn13(isbn);
+        return key != BookCatalog.NO_ISBN ? numeric.put(key, value) : text.put(isbn, value);
+    }
+
+    public V putIfAbsent(String isbn, V value) {
+        long key = BookCatalog.parseIsbn13(isbn);
+        return key != BookCatalog.NO_ISBN ? numeric.putIfAbsent(key, value) : text.putIfAbsent(isbn, value);
+    }
+
+    public V computeIfAbsent(String isbn, Function<String, ? extends V> function) {
+        long key = BookCatalog.parseIsbn13(isbn);
+        return key != BookCatalog.NO_ISBN
+                ? numeric.computeIfAbsent(key, k -> function.apply(isbn))
+                : text.computeIfAbsent(isbn, function);
+    }
+
+    // Keyed by the book's primitive ISBN, without formatting or parsing a string
+    public V get(Book book) {
+        return book.isbnText() == null ? numeric.get(book.isbn13()) : text.get(book.isbnText());
+    }
+
+    public V put(Book book, V value) {
+        return book.isbnText() == null ? numeric.put(book.isbn13(), value) : text.put(book.isbnText(), value);
+    }
+
+    public V putIfAbsent(Book book, V value) {
+        return book.isbnText() == null ? numeric.putIfAbsent(book.isbn13(), value) : text.putIfAbsent(book.isbnText(), value);
+    }
+
+    public V computeIfAbsent(Book book, Function<Book, ? extends V> function) {
+        return book.isbnText() == null
+                ? numeric.computeIfAbsent(book.isbn13(), k -> function.apply(book))
+                : text.computeIfAbsent(book.isbnText(), k -> function.apply(book));
+    }
+
+    public int size() {
+        return numeric.size() + text.size();
+    }
+
+    public List<V> values() {
+        List<V> values = new ArrayList<>(numeric.values());
+        values.addAll(text.values());
+        return values;
+    }
+}
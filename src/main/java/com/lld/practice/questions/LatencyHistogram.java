@@ -0,0 +1,143 @@
+package com.lld.practice.questions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent log-linear histogram of nanosecond values, in the spirit of HdrHistogram.
+ *
+ * Every power of two is split into 16 linear sub-buckets, so any recorded value is reported
+ * within about 6% of its true value, from 1 ns up to about 18 minutes. Recording is an index
+ * computation plus a couple of atomic adds; no allocation and no locks.
+ *
+ * Threads record into one of a few stripes picked by thread id, each with its own counters,
+ * so threads on different cores rarely write the same cache lines. Stripes are created on
+ * first use and merged on read.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // 2^40 ns, larger values land in the last bucket
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int STRIPES = Math.min(16, Integer.highestOneBit(
+            Runtime.getRuntime().availableProcessors() * 2 - 1)); // power of two >= cores, at most 16
+
+    private final AtomicReferenceArray<Stripe> stripes;
+
+    public LatencyHistogram() {
+        this.stripes = new AtomicReferenceArray<>(STRIPES);
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        Stripe stripe = stripeForCurrentThread();
+        stripe.counts.getAndIncrement(indexOf(nanos));
+        stripe.totalNanos.getAndAdd(nanos);
+        long max = stripe.maxNanos.get(); // only written when a new maximum arrives
+        while (nanos > max && !stripe.maxNanos.compareAndSet(max, nanos)) {
+            max = stripe.maxNanos.get();
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (long bucket : mergedCounts()) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) total += stripe.totalNanos.get();
+        }
+        return total;
+    }
+
+    public long getMaxNanos() {
+        long max = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe != null) max = Math.max(max, stripe.maxNanos.get());
+        }
+        return max;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100), or 0 when empty
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = mergedCounts();
+        long count = 0;
+        for (long bucket : snapshot) {
+            count += bucket;
+        }
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(upperBoundOf(i), getMaxNanos());
+        }
+        return getMaxNanos();
+    }
+
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe == null) continue;
+            for (int b = 0; b < BUCKETS; b++) {
+                stripe.counts.set(b, 0);
+            }
+            stripe.totalNanos.set(0);
+            stripe.maxNanos.set(0);
+        }
+    }
+
+    private long[] mergedCounts() {
+        long[] merged = new long[BUCKETS];
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = stripes.get(i);
+            if (stripe == null) continue;
+            for (int b = 0; b < BUCKETS; b++) {
+                merged[b] += stripe.counts.get(b);
+            }
+        }
+        return merged;
+    }
+
+    private Stripe stripeForCurrentThread() {
+        long id = Thread.currentThread().getId();
+        int index = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe());
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static final class Stripe {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+    }
+}
@@ -0,0 +1,86 @@
+package com.lld.practice.questions;
+
+/**
+ * One entry of the event pipeline.
+ *
+ * Instances are pre-allocated slots of the ring buffer and get overwritten once consumed,
+ * so sinks must copy anything they keep beyond accept().
+ */
+class LibraryEvent {
+    private EventType type;
+    private long timestampMillis;
+    private String library;
+    private String isbn;
+    private String userId;
+    private String title;       // null when the book was not found
+    private LoanOutcome reason; // REJECTION only
+    private double fine;        // FINE only
+
+    void set(EventType type, long timestampMillis, String library, String isbn, String userId,
+             String title, LoanOutcome reason, double fine) {
+        this.type = type;
+        this.timestampMillis = timestampMillis;
+        this.library = library;
+        this.isbn = isbn;
+        this.userId = userId;
+        this.title = title;
+        this.reason = reason;
+        this.fine = fine;
+    }
+
+    public LibraryEvent copy() {
+        LibraryEvent copy = new LibraryEvent();
+        copy.set(type, timestampMillis, library, isbn, userId, title, reason, fine);
+        return copy;
+    }
+
+    public EventType getType() { return type; }
+    public long getTimestampMillis() { return timestampMillis; }
+    public String getLibrary() { return library; }
+    public String getIsbn() { return isbn; }
+    public String getUserId() { return userId; }
+    public String getTitle() { return title; }
+    public LoanOutcome getReason() { return reason; }
+    public double getFine() { return fine; }
+
+    // The console wording borrowBook and returnBook used to print
+    public String describe() {
+        return switch (type) {
+            case BORROW -> "Book borrowed successfully: " + title;
+            case RETURN -> "Book returned successfully: " + title;
+            case FINE -> "Fine for overdue book: $" + fine;
+            case REJECTION -> switch (reason) {
+                case BOOK_NOT_FOUND -> "Book not found in library";
+                case LIMIT_REACHED -> "User has reached maximum book limit";
+                case NOT_AVAILABLE -> "Book is not available";
+                case NO_ACTIVE_LOAN -> "No active loan found for this book and user";
+                default -> "Request rejected: " + reason;
+            };
+        };
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s library=%s isbn=%s user=%s%s%s", timestampMillis, type, library, isbn, userId,
+                reason != null ? " reason=" + reason : "", type == EventType.FINE ? " fine=" + fine : "");
+    }
+}
+
+enum EventType {
+    BORROW,
+    RETURN,
+    FINE,
+    REJECTION
+}
+
+// Receives events on the pipeline's consumer thread, one at a time and in publication order
+interface EventSink {
+    void accept(LibraryEvent event);
+
+    // Called when the consumer has caught up, e.g. to flush buffered output
+    default void endOfBatch() {
+    }
+
+    default void close() {
+    }
+}
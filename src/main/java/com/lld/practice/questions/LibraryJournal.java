@@ -0,0 +1,320 @@
+package com.lld.practice.questions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of addBook, borrowBook and returnBook events.
+ *
+ * Record layout: [int length][byte type][payload][int crc32 of type + payload].
+ * Appends only copy into an in-memory buffer; durability uses group commit, where the
+ * first thread waiting on sync() writes and fsyncs everything buffered so far on behalf
+ * of every other waiter. Replay reads the file through memory-mapped windows and stops
+ * at the first torn or corrupt record.
+ */
+class LibraryJournal implements Closeable {
+    static final byte ADD_BOOK = 1;
+    static final byte BORROW = 2;
+    static final byte RETURN = 3;
+
+    private static final int HEADER_BYTES = 4;
+    private static final int CRC_BYTES = 4;
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+    // Callback for replayed events
+    interface Handler {
+        void onAddBook(Book book, int quantity);
+        void onBorrow(String isbn, String userId, LocalDate borrowDate);
+        void onReturn(String isbn, String userId, LocalDate returnDate);
+    }
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024); // appended, not yet written
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appendedOffset;  // end of the last appended record
+    private long durableOffset;   // end of the last fsynced record
+    private boolean flushing;
+    private IOException failure;  // a failed write or fsync poisons the journal
+
+    private LibraryJournal(FileChannel channel, long validLength) throws IOException {
+        this.channel = channel;
+        // Drop a torn tail left by a crash so new records follow the last good one
+        channel.truncate(validLength);
+        channel.position(validLength);
+        this.appendedOffset = validLength;
+        this.durableOffset = validLength;
+    }
+
+    public static LibraryJournal open(Path path) {
+        return open(path, -1);
+    }
+
+    // Opens a journal just replayed, trusting the valid length that replay returned instead of
+    // reading the file again; -1 means unknown
+    public static LibraryJournal open(Path path, long validLength) {
+        try {
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (validLength < 0) {
+                    validLength = replay(channel, null);
+                } else if (validLength > channel.size()) {
+                    throw new IllegalArgumentException("Valid length " + validLength
+                            + " exceeds journal size " + channel.size());
+                }
+                return new LibraryJournal(channel, validLength);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal " + path, e);
+        }
+    }
+
+    // Replays every intact record and returns the length of the valid prefix
+    public static long replay(Path path, Handler handler) {
+        if (!Files.exists(path)) return 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return replay(channel, handler);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay journal " + path, e);
+        }
+    }
+
+    public synchronized long appendAddBook(Book book, int quantity) {
+        byte[] isbn = utf8(book.getIsbn());
+        byte[] title = utf8(book.getTitle());
+        byte[] author = utf8(book.getAuthor());
+        List<String> categoryNames = book.getCategories();
+        List<byte[]> categories = new ArrayList<>(categoryNames.size());
+        int size = 1 + 4 + isbn.length + 4 + title.length + 4 + author.length + 4 + 4;
+        for (String category : categoryNames) {
+            byte[] bytes = utf8(category);
+            categories.add(bytes);
+            size += 4 + bytes.length;
+        }
+
+        ByteBuffer buffer = beginRecord(size);
+        int start = buffer.position();
+        buffer.put(ADD_BOOK);
+        putBytes(buffer, isbn);
+        putBytes(buffer, title);
+        putBytes(buffer, author);
+        buffer.putInt(categories.size());
+        for (byte[] category : categories) {
+            putBytes(buffer, category);
+        }
+        buffer.putInt(quantity);
+        return endRecord(buffer, start);
+    }
+
+    public synchronized long appendBorrow(String isbn, String userId, LocalDate borrowDate) {
+        return appendLoanEvent(BORROW, isbn, userId, borrowDate);
+    }
+
+    public synchronized long appendReturn(String isbn, String userId, LocalDate returnDate) {
+        return appendLoanEvent(RETURN, isbn, userId, returnDate);
+    }
+
+    // Blocks until everything appended so far is on disk
+    public void sync() {
+        long target;
+        synchronized (this) {
+            target = appendedOffset;
+        }
+        awaitDurable(target);
+    }
+
+    public void awaitDurable(long offset) {
+        while (true) {
+            ByteBuffer batch;
+            long batchEnd;
+            synchronized (this) {
+                while (flushing && durableOffset < offset) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for journal sync", e);
+                    }
+                }
+                if (durableOffset >= offset) return;
+                checkHealthy();
+
+                // Become the leader and flush everything buffered so far
+                flushing = true;
+                batch = pending;
+                batchEnd = appendedOffset;
+                pending = spare;
+            }
+
+            IOException error = null;
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (this) {
+                if (error == null) {
+                    durableOffset = batchEnd;
+                } else {
+                    failure = error;
+                }
+                batch.clear();
+                spare = batch;
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close journal", e);
+        }
+    }
+
+    private long appendLoanEvent(byte type, String isbn, String userId, LocalDate date) {
+        byte[] isbnBytes = utf8(isbn);
+        byte[] userBytes = utf8(userId);
+        ByteBuffer buffer = beginRecord(1 + 4 + isbnBytes.length + 4 + userBytes.length + 8);
+        int start = buffer.position();
+        buffer.put(type);
+        putBytes(buffer, isbnBytes);
+        putBytes(buffer, userBytes);
+        buffer.putLong(date.toEpochDay());
+        return endRecord(buffer, start);
+    }
+
+    private ByteBuffer beginRecord(int size) {
+        checkHealthy();
+        if (size > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Journal record too large: " + size + " bytes");
+        }
+        pending = ensureCapacity(pending, HEADER_BYTES + size + CRC_BYTES);
+        pending.putInt(size);
+        return pending;
+    }
+
+    private long endRecord(ByteBuffer buffer, int start) {
+        int end = buffer.position();
+        crc.reset();
+        crc.update(buffer.array(), start, end - start);
+        buffer.putInt((int) crc.getValue());
+        appendedOffset += HEADER_BYTES + (end - start) + CRC_BYTES;
+        return appendedOffset;
+    }
+
+    private void checkHealthy() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal is unusable after a failed write", failure);
+        }
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) return buffer;
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    private static long replay(FileChannel channel, Handler handler) throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        CRC32 checksum = new CRC32();
+
+        while (position < fileSize) {
+            long windowSize = Math.min(MAP_WINDOW, fileSize - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+            int consumed = 0;
+            while (window.remaining() >= HEADER_BYTES) {
+                int recordStart = window.position();
+                int length = window.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    return position + recordStart; // corrupt length
+                }
+                if (window.remaining() < length + CRC_BYTES) {
+                    break; // record continues in the next window, or is torn
+                }
+
+                ByteBuffer payload = window.slice(window.position(), length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                window.position(window.position() + length);
+                if ((int) checksum.getValue() != window.getInt()) {
+                    return position + recordStart;
+                }
+                if (handler != null) {
+                    dispatch(payload, handler);
+                }
+                consumed = window.position();
+            }
+
+            // Records never exceed a window, so an empty window means a torn tail
+            if (consumed == 0) return position;
+            position += consumed;
+        }
+        return position;
+    }
+
+    private static void dispatch(ByteBuffer payload, Handler handler) {
+        byte type = payload.get();
+        switch (type) {
+            case ADD_BOOK -> {
+                String isbn = getString(payload);
+                String title = getString(payload);
+                String author = getString(payload);
+                int categoryCount = payload.getInt();
+                List<String> categories = new ArrayList<>(categoryCount);
+                for (int i = 0; i < categoryCount; i++) {
+                    categories.add(getString(payload));
+                }
+                handler.onAddBook(new Book(isbn, title, author, categories), payload.getInt());
+            }
+            case BORROW -> handler.onBorrow(getString(payload), getString(payload), LocalDate.ofEpochDay(payload.getLong()));
+            case RETURN -> handler.onReturn(getString(payload), getString(payload), LocalDate.ofEpochDay(payload.getLong()));
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -1,8 +1,20 @@
 package com.lld.practice.questions;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Library Management System - LLD Interview Question
@@ -23,6 +35,7 @@ public class LibraryManagementSystem {
         
         // Create library
         Library centralLibrary = new Library("Central Library", "123 Main St");
+        centralLibrary.setEventPipeline(EventPipeline.console()); // print events as they happen
         librarySystem.addLibrary(centralLibrary);
         
         // Add books
@@ -56,6 +69,7 @@ public class LibraryManagementSystem {
         System.out.println("\nBorrowing books:");
         boolean borrowed1 = centralLibrary.borrowBook(book1.getIsbn(), student);
         boolean borrowed2 = centralLibrary.borrowBook(book2.getIsbn(), faculty);
+        EventPipeline.console().flush(); // events print on the pipeline's thread
         System.out.println("Student borrowed Effective Java: " + borrowed1);
         System.out.println("Faculty borrowed Design Patterns: " + borrowed2);
         
@@ -67,6 +81,7 @@ public class LibraryManagementSystem {
         // Return books
         System.out.println("\nReturning books:");
         boolean returned = centralLibrary.returnBook(book1.getIsbn(), student);
+        EventPipeline.console().flush();
         System.out.println("Student returned Effective Java: " + returned);
         
         // Display user's borrowed books
@@ -77,36 +92,107 @@ public class LibraryManagementSystem {
 }
 
 // Book entity
+// Stored compactly: ISBN-13 packed into a long and categories as a shared array of
+// dictionary ids (see BookCatalog); authors are shared through BookFlyweights
 class Book {
-    private String isbn;
-    private String title;
-    private String author;
-    private List<String> categories;
+    private final long isbn13;       // BookCatalog.NO_ISBN when the ISBN is not 13 digits
+    private final int isbnHyphens;   // hyphen positions of the original spelling
+    private final String isbnText;   // only kept for non ISBN-13 identifiers
+    private final String title;
+    private final String author;
+    private final int[] categoryIds;
     
     public Book(String isbn, String title, String author, List<String> categories) {
-        this.isbn = isbn;
+        BookCatalog catalog = BookCatalog.getInstance();
+        this.isbn13 = BookCatalog.parseIsbn13(isbn);
+        this.isbnHyphens = isbn13 != BookCatalog.NO_ISBN ? BookCatalog.hyphenMask(isbn) : 0;
+        this.isbnText = isbn13 != BookCatalog.NO_ISBN ? null : isbn;
         this.title = title;
         this.author = author;
-        this.categories = new ArrayList<>(categories);
+        this.categoryIds = catalog.encodeCategories(categories);
+    }
+    
+    // Same book with a shared author string (see BookFlyweights)
+    private Book(Book book, String author) {
+        this.isbn13 = book.isbn13;
+        this.isbnHyphens = book.isbnHyphens;
+        this.isbnText = book.isbnText;
+        this.title = book.title;
+        this.author = author;
+        this.categoryIds = book.categoryIds;
+    }
+    
+    Book withAuthor(String author) {
+        return author == this.author ? this : new Book(this, author);
     }
     
     // Getters
-    public String getIsbn() { return isbn; }
+    // Formats a new string on every call; internal lookups use isbn13() and isbnText() instead
+    public String getIsbn() {
+        return isbnText != null ? isbnText : BookCatalog.formatIsbn13(isbn13, isbnHyphens);
+    }
     public String getTitle() { return title; }
     public String getAuthor() { return author; }
-    public List<String> getCategories() { return new ArrayList<>(categories); }
+    
+    // Read-only view decoded on access, no copy
+    public List<String> getCategories() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return BookCatalog.getInstance().categoryName(categoryIds[index]);
+            }
+            
+            @Override
+            public int size() {
+                return categoryIds.length;
+            }
+        };
+    }
+    
+    // Primitive ISBN key: the packed ISBN-13, or NO_ISBN with the identifier kept as text
+    long isbn13() {
+        return isbn13;
+    }
+    
+    String isbnText() {
+        return isbnText;
+    }
+    
+    // Identity check against an ISBN already parsed by BookCatalog.parseIsbn13, without formatting
+    boolean hasIsbn(long isbn13, String isbnText) {
+        return this.isbn13 == isbn13 && Objects.equals(this.isbnText, isbnText);
+    }
+    
+    // Stable order by ISBN without formatting it: ISBN-13s by value, then text identifiers
+    int compareIsbn(Book other) {
+        if (isbnText == null || other.isbnText == null) {
+            return isbnText == null && other.isbnText == null ? Long.compare(isbn13, other.isbn13) : (isbnText == null ? -1 : 1);
+        }
+        return isbnText.compareTo(other.isbnText);
+    }
+    
+    // Shared dictionary ids (see BookCatalog); callers must not modify the array
+    int[] getCategoryIds() {
+        return categoryIds;
+    }
+    
+    boolean sameContent(Book other) {
+        return equals(other) && isbnHyphens == other.isbnHyphens && title.equals(other.title) && author.equals(other.author)
+                && Arrays.equals(categoryIds, other.categoryIds);
+    }
     
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Book book = (Book) obj;
-        return Objects.equals(isbn, book.isbn);
+        return isbn13 == book.isbn13 && Objects.equals(isbnText, book.isbnText);
     }
     
+    // Hyphenation is presentation only: the same 13 digits are the same book
     @Override
     public int hashCode() {
-        return Objects.hash(isbn);
+        return isbnText != null ? isbnText.hashCode() : Long.hashCode(isbn13);
     }
 }
 
@@ -115,7 +201,7 @@ abstract class User {
     protected String userId;
     protected String name;
     protected String email;
-    protected List<BorrowRecord> borrowedBooks;
+    protected Set<BorrowRecord> borrowedBooks; // insertion-ordered, O(1) removal
     protected int maxBooksAllowed;
     protected int borrowDurationDays;
     
@@ -125,32 +211,37 @@ abstract class User {
         this.email = email;
         this.maxBooksAllowed = maxBooksAllowed;
         this.borrowDurationDays = borrowDurationDays;
-        this.borrowedBooks = new ArrayList<>();
+        this.borrowedBooks = new LinkedHashSet<>();
     }
     
-    public boolean canBorrowMore() {
+    // Borrowed-book list is guarded by the user's monitor so limits hold across libraries
+    public synchronized boolean canBorrowMore() {
         return borrowedBooks.size() < maxBooksAllowed;
     }
     
     public abstract double calculateFine(BorrowRecord record);
     
+    public abstract double getFinePerDay();
+    
     // Getters
     public String getUserId() { return userId; }
     public String getName() { return name; }
     public String getEmail() { return email; }
-    public List<BorrowRecord> getBorrowedBooks() { return new ArrayList<>(borrowedBooks); }
+    public synchronized List<BorrowRecord> getBorrowedBooks() { return new ArrayList<>(borrowedBooks); }
     public int getBorrowDurationDays() { return borrowDurationDays; }
     
-    public void addBorrowRecord(BorrowRecord record) {
+    public synchronized void addBorrowRecord(BorrowRecord record) {
         borrowedBooks.add(record);
     }
     
-    public void removeBorrowRecord(BorrowRecord record) {
+    public synchronized void removeBorrowRecord(BorrowRecord record) {
         borrowedBooks.remove(record);
     }
 }
 
 class Student extends User {
+    private static final double FINE_PER_DAY = 0.50; // $0.50 per day
+    
     public Student(String userId, String name, String email) {
         super(userId, name, email, 5, 14); // 5 books, 14 days
     }
@@ -158,11 +249,18 @@ class Student extends User {
     @Override
     public double calculateFine(BorrowRecord record) {
         long daysOverdue = record.getDaysOverdue();
-        return daysOverdue > 0 ? daysOverdue * 0.50 : 0.0; // $0.50 per day
+        return daysOverdue > 0 ? daysOverdue * FINE_PER_DAY : 0.0;
+    }
+    
+    @Override
+    public double getFinePerDay() {
+        return FINE_PER_DAY;
     }
 }
 
 class Faculty extends User {
+    private static final double FINE_PER_DAY = 1.00; // $1.00 per day
+    
     public Faculty(String userId, String name, String email) {
         super(userId, name, email, 10, 30); // 10 books, 30 days
     }
@@ -170,7 +268,12 @@ class Faculty extends User {
     @Override
     public double calculateFine(BorrowRecord record) {
         long daysOverdue = record.getDaysOverdue();
-        return daysOverdue > 0 ? daysOverdue * 1.00 : 0.0; // $1.00 per day
+        return daysOverdue > 0 ? daysOverdue * FINE_PER_DAY : 0.0;
+    }
+    
+    @Override
+    public double getFinePerDay() {
+        return FINE_PER_DAY;
     }
 }
 
@@ -196,7 +299,11 @@ class BorrowRecord {
     }
     
     public void markReturned() {
-        this.returnDate = LocalDate.now();
+        markReturned(LocalDate.now());
+    }
+    
+    public void markReturned(LocalDate returnDate) {
+        this.returnDate = returnDate;
     }
     
     // Getters
@@ -207,96 +314,892 @@ class BorrowRecord {
     public LocalDate getReturnDate() { return returnDate; }
 }
 
+// Bulk checkout or return request
+class LoanRequest {
+    private final String isbn;
+    private final User user;
+    
+    public LoanRequest(String isbn, User user) {
+        this.isbn = isbn;
+        this.user = user;
+    }
+    
+    public String getIsbn() { return isbn; }
+    public User getUser() { return user; }
+}
+
+// A patron waiting in line for a copy; the future completes with the loan once a copy is handed over
+class Hold {
+    private final User user;
+    private final CompletableFuture<BorrowRecord> loan;
+    private BorrowRecord handedOver; // set under the stripe lock, published by complete()
+    
+    public Hold(User user) {
+        this.user = user;
+        this.loan = new CompletableFuture<>();
+    }
+    
+    public User getUser() { return user; }
+    public CompletableFuture<BorrowRecord> getLoan() { return loan; }
+    
+    BorrowRecord getHandedOver() { return handedOver; }
+    
+    void handOver(BorrowRecord record) {
+        this.handedOver = record;
+    }
+    
+    // Runs after the stripe lock is released, so callbacks never execute under it
+    void complete() {
+        loan.complete(handedOver);
+    }
+}
+
+// Result of a single borrow or return
+enum LoanOutcome {
+    SUCCESS,
+    BOOK_NOT_FOUND,
+    LIMIT_REACHED,
+    NOT_AVAILABLE,
+    NO_ACTIVE_LOAN
+}
+
+// Outcome of a borrow or return plus what it produced: the loan, and the fine owed on a return
+class LoanResult {
+    private final LoanOutcome outcome;
+    private final BorrowRecord record; // null unless successful
+    private final double fine;
+    
+    private LoanResult(LoanOutcome outcome, BorrowRecord record, double fine) {
+        this.outcome = outcome;
+        this.record = record;
+        this.fine = fine;
+    }
+    
+    static LoanResult of(LoanOutcome failure) {
+        return new LoanResult(failure, null, 0.0);
+    }
+    
+    static LoanResult borrowed(BorrowRecord record) {
+        return new LoanResult(LoanOutcome.SUCCESS, record, 0.0);
+    }
+    
+    static LoanResult returned(BorrowRecord record, double fine) {
+        return new LoanResult(LoanOutcome.SUCCESS, record, fine);
+    }
+    
+    public LoanOutcome getOutcome() { return outcome; }
+    public BorrowRecord getRecord() { return record; }
+    public double getFine() { return fine; }
+    public boolean isSuccess() { return outcome == LoanOutcome.SUCCESS; }
+}
+
+// Search modes supported by Library
+enum SearchMode {
+    TOKEN,      // whole-word match through the inverted index
+    SUBSTRING,  // legacy case-insensitive substring scan over the catalog
+    FUZZY       // typo-tolerant title/author match through the trigram index
+}
+
 // Library class
+// Lock order: ISBN stripe first, then the user's monitor. Unrelated ISBNs never contend.
 class Library {
+    private static final int LOCK_STRIPES = 64; // power of two
+    
     private String name;
     private String address;
-    private Map<String, Book> books; // ISBN -> Book
-    private Map<String, Integer> bookInventory; // ISBN -> Available count
-    private Map<String, List<BorrowRecord>> activeLoans; // ISBN -> List of active loans
+    private IsbnMap<Book> books; // ISBN -> Book
+    private IsbnMap<AtomicInteger> bookInventory; // ISBN -> Available count
+    private IsbnMap<Map<String, Deque<BorrowRecord>>> activeLoans; // ISBN -> userId -> active loans, oldest first
+    private IsbnMap<Deque<Hold>> holds; // ISBN -> waiting patrons, first come first served
+    private final ConcurrentHashMap<String, Set<String>> pendingHolds; // user ID -> ISBNs they wait for here
+    private BookSearchIndex searchIndex;
+    private AutocompleteTrie autocompleteTrie;
+    private TrigramIndex trigramIndex;
+    private final CategoryIndex categoryIndex;
+    private final CatalogPublisher catalog; // consistent lock-free view over books and bookInventory
+    private DueDateIndex dueDateIndex;
+    private final ReentrantLock[] isbnLocks;
+    private volatile LibraryJournal journal; // null when running purely in memory
+    private volatile AvailabilityIndex availabilityIndex; // null until added to a LibrarySystem
+    private volatile BookFlyweights flyweights; // null until added to a LibrarySystem
+    private volatile EventPipeline events;
+    private final LibraryMetrics metrics;
+    private final SearchCache searchCache;
+    private final List<SearchCache> dependentCaches; // this branch's cache plus any system-wide ones
     
     public Library(String name, String address) {
         this.name = name;
         this.address = address;
-        this.books = new ConcurrentHashMap<>();
-        this.bookInventory = new ConcurrentHashMap<>();
-        this.activeLoans = new ConcurrentHashMap<>();
+        this.books = new IsbnMap<>();
+        this.bookInventory = new IsbnMap<>();
+        this.activeLoans = new IsbnMap<>();
+        this.holds = new IsbnMap<>();
+        this.pendingHolds = new ConcurrentHashMap<>();
+        this.searchIndex = new BookSearchIndex();
+        this.autocompleteTrie = new AutocompleteTrie();
+        this.trigramIndex = new TrigramIndex();
+        this.categoryIndex = new CategoryIndex();
+        this.catalog = new CatalogPublisher();
+        this.dueDateIndex = new DueDateIndex();
+        this.searchCache = new SearchCache();
+        this.dependentCaches = new CopyOnWriteArrayList<>(List.of(searchCache));
+        this.events = EventPipeline.discarding();
+        this.metrics = new LibraryMetrics();
+        this.isbnLocks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            isbnLocks[i] = new ReentrantLock();
+        }
+    }
+    
+    // Rebuilds a library from its journal, then keeps appending to it
+    public static Library recover(String name, String address, Path journalPath, Function<String, User> users) {
+        Library library = new Library(name, address);
+        long validLength = LibraryJournal.replay(journalPath, new LibraryJournal.Handler() {
+            @Override
+            public void onAddBook(Book book, int quantity) {
+                library.addBookLocked(book, quantity);
+            }
+            
+            // A journaled borrow already passed the loan policy; the user's loans at other branches
+            // may not be replayed yet, so the limit is not checked again
+            @Override
+            public void onBorrow(String isbn, String userId, LocalDate borrowDate) {
+                Book book = library.books.get(isbn);
+                if (book == null) {
+                    throw new IllegalStateException("Journal replay failed to borrow " + isbn + ": " + LoanOutcome.BOOK_NOT_FOUND);
+                }
+                User user = resolve(userId);
+                synchronized (user) {
+                    if (library.checkoutLocked(book, user, borrowDate) == null) {
+                        throw new IllegalStateException("Journal replay failed to borrow " + isbn + ": " + LoanOutcome.NOT_AVAILABLE);
+                    }
+                }
+            }
+            
+            @Override
+            public void onReturn(String isbn, String userId, LocalDate returnDate) {
+                if (library.returnLocked(isbn, resolve(userId), returnDate) == null) {
+                    throw new IllegalStateException("Journal replay found no loan of " + isbn + " for " + userId);
+                }
+            }
+            
+            private User resolve(String userId) {
+                User user = users.apply(userId);
+                if (user == null) {
+                    throw new IllegalStateException("Journal refers to unknown user " + userId);
+                }
+                return user;
+            }
+        });
+        library.journal = LibraryJournal.open(journalPath, validLength); // no second pass over the file
+        return library;
+    }
+    
+    // Writes books, inventory and active loans as a binary snapshot
+    public void exportSnapshot(Path path) {
+        LibrarySnapshot.write(List.of(this), path);
+    }
+    
+    public static Library importSnapshot(Path path, Function<String, User> users) {
+        List<Library> libraries = LibrarySnapshot.read(path, users, new BookFlyweights());
+        if (libraries.size() != 1) {
+            throw new IllegalStateException("Snapshot holds " + libraries.size() + " libraries, expected 1");
+        }
+        return libraries.get(0);
+    }
+    
+    public void closeJournal() {
+        LibraryJournal current = journal;
+        if (current != null) {
+            journal = null;
+            current.close();
+        }
     }
     
     public void addBook(Book book, int quantity) {
-        books.put(book.getIsbn(), book);
-        bookInventory.put(book.getIsbn(), bookInventory.getOrDefault(book.getIsbn(), 0) + quantity);
-        activeLoans.putIfAbsent(book.getIsbn(), new ArrayList<>());
+        ReentrantLock lock = lockFor(book.getIsbn());
+        List<Hold> served;
+        acquire(lock);
+        try {
+            // Journal first, so a failed append leaves memory untouched
+            LibraryJournal current = journal;
+            if (current != null) current.appendAddBook(book, quantity);
+            addBookLocked(book, quantity);
+            served = serveHoldsLocked(book.getIsbn(), LocalDate.now());
+        } finally {
+            lock.unlock();
+        }
+        syncJournal();
+        completeHolds(served);
+    }
+    
+    private void addBookLocked(Book book, int quantity) {
+        // Share one Book instance per ISBN across the system's libraries, and one key string across indexes
+        BookFlyweights shared = flyweights;
+        if (shared != null) book = shared.canonical(book);
+        String isbn = book.getIsbn();
+        
+        Book previous = books.put(isbn, book);
+        if (previous != book) {
+            if (previous != null) {
+                String previousIsbn = previous.getIsbn(); // may be spelled with other hyphens
+                searchIndex.remove(previousIsbn, previous);
+                autocompleteTrie.remove(previous);
+                trigramIndex.remove(previousIsbn, previous);
+            }
+            searchIndex.add(isbn, book);
+            autocompleteTrie.add(book);
+            trigramIndex.add(isbn, book);
+            categoryIndex.add(book, previous);
+        }
+        int available = bookInventory.computeIfAbsent(book, k -> new AtomicInteger()).addAndGet(quantity);
+        activeLoans.putIfAbsent(book, new HashMap<>());
+        publishAvailability(book, available);
+        
+        // After the indexes and the catalog, which search results are read from, so a search that
+        // saw the old catalog is checked against this change (see SearchCache.version)
+        if (previous != book) {
+            for (SearchCache cache : dependentCaches) {
+                if (previous != null) cache.invalidate(previous);
+                cache.invalidate(book);
+            }
+        }
     }
     
+    // Availability reads the published catalog, so readers never touch the writers' counters
     public boolean isBookAvailable(String isbn) {
-        return bookInventory.getOrDefault(isbn, 0) > 0;
+        return catalog.current().isAvailable(isbn);
+    }
+    
+    public int getAvailableCopies(String isbn) {
+        return catalog.current().getAvailableCopies(isbn);
+    }
+    
+    // Immutable view of books and available counts, consistent across ISBNs and including
+    // every write that returned before the call
+    public CatalogSnapshot getCatalogSnapshot() {
+        return catalog.current();
     }
     
-    public synchronized boolean borrowBook(String isbn, User user) {
-        if (!books.containsKey(isbn)) {
-            System.out.println("Book not found in library");
-            return false;
+    
+    // Called with the ISBN's stripe held, so per-ISBN updates reach the catalog and the index in order.
+    // The book must be the one currently stored under its ISBN.
+    private void publishAvailability(Book book, int available) {
+        catalog.stage(book, available);
+        AvailabilityIndex index = availabilityIndex;
+        if (index != null) index.update(name, book, available);
+    }
+    
+    // Books added from now on share instances with the system's other libraries
+    void attachFlyweights(BookFlyweights shared) {
+        flyweights = shared;
+    }
+    
+    // Registers the system-wide index and seeds it with the current counts, atomically with respect to loans
+    void attachAvailabilityIndex(AvailabilityIndex index) {
+        withAllStripesLocked(() -> {
+            availabilityIndex = index;
+            for (Book book : books.values()) {
+                index.update(name, book, bookInventory.get(book).get());
+            }
+        });
+    }
+    
+    public boolean borrowBook(String isbn, User user) {
+        return tryBorrow(isbn, user).isSuccess();
+    }
+    
+    // The outcome and, on success, the new loan; the event goes to the pipeline, not the console
+    public LoanResult tryBorrow(String isbn, User user) {
+        long start = metrics.start();
+        LoanResult result = performBorrow(isbn, user);
+        metrics.record(LibraryMetrics.Operation.BORROW, start, result.getOutcome());
+        return result;
+    }
+    
+    private LoanResult performBorrow(String isbn, User user) {
+        ReentrantLock lock = lockFor(isbn);
+        LoanResult result;
+        acquire(lock);
+        try {
+            result = borrowLocked(isbn, user, LocalDate.now());
+        } finally {
+            lock.unlock();
         }
-        
-        if (!user.canBorrowMore()) {
-            System.out.println("User has reached maximum book limit");
-            return false;
+        if (result.isSuccess()) syncJournal();
+        publishBorrowEvents(isbn, user, result);
+        return result;
+    }
+    
+    public void setEventPipeline(EventPipeline events) {
+        this.events = events;
+    }
+    
+    // Events for one finished borrow, once its stripe is released and the journal synced
+    private void publishBorrowEvents(String isbn, User user, LoanResult result) {
+        if (result.isSuccess()) {
+            publish(EventType.BORROW, isbn, user, result.getRecord().getBook(), null, 0.0);
+        } else {
+            publish(EventType.REJECTION, isbn, user, books.get(isbn), result.getOutcome(), 0.0);
+        }
+    }
+    
+    // Events for one finished return: the fine, if any, comes before the return itself
+    private void publishReturnEvents(String isbn, User user, LoanResult result) {
+        if (!result.isSuccess()) {
+            publish(EventType.REJECTION, isbn, user, books.get(isbn), result.getOutcome(), 0.0);
+            return;
         }
+        Book book = result.getRecord().getBook();
+        if (result.getFine() > 0) publish(EventType.FINE, isbn, user, book, null, result.getFine());
+        publish(EventType.RETURN, isbn, user, book, null, 0.0);
+    }
+    
+    // Never blocks or allocates; called after the stripe lock is released
+    private void publish(EventType type, String isbn, User user, Book book, LoanOutcome reason, double fine) {
+        events.publish(type, name, isbn, user.getUserId(), book != null ? book.getTitle() : null, reason, fine);
+    }
+    
+    // Applies every request in order while holding all of their ISBN stripes once.
+    // Each request gets the same events and metrics as a single borrow, timed from the start of the batch.
+    public List<LoanResult> borrowBooks(List<LoanRequest> requests) {
+        long start = metrics.start();
+        List<LoanResult> results = new ArrayList<>(requests.size());
+        int[] stripes = lockStripes(requests);
+        try {
+            LocalDate today = LocalDate.now();
+            for (LoanRequest request : requests) {
+                results.add(borrowLocked(request.getIsbn(), request.getUser(), today));
+            }
+        } finally {
+            unlockStripes(stripes);
+        }
+        syncJournal(); // one group commit for the whole batch
+        for (int i = 0; i < requests.size(); i++) {
+            LoanRequest request = requests.get(i);
+            publishBorrowEvents(request.getIsbn(), request.getUser(), results.get(i));
+            metrics.record(LibraryMetrics.Operation.BORROW, start, results.get(i).getOutcome());
+        }
+        return results;
+    }
+    
+    private LoanResult borrowLocked(String isbn, User user, LocalDate borrowDate) {
+        Book book = books.get(isbn);
+        if (book == null) return LoanResult.of(LoanOutcome.BOOK_NOT_FOUND);
         
-        if (!isBookAvailable(isbn)) {
-            System.out.println("Book is not available");
-            return false;
+        // The limit check and the new record must be atomic for this user
+        synchronized (user) {
+            if (!user.canBorrowMore()) return LoanResult.of(LoanOutcome.LIMIT_REACHED);
+            BorrowRecord record = checkoutLocked(book, user, borrowDate);
+            return record != null ? LoanResult.borrowed(record) : LoanResult.of(LoanOutcome.NOT_AVAILABLE);
         }
+    }
+    
+    // Takes a copy and records the loan, or returns null if none is left.
+    // The caller holds the ISBN's stripe and the user's monitor and has checked the limit.
+    private BorrowRecord checkoutLocked(Book book, User user, LocalDate borrowDate) {
+        // Every inventory change holds this stripe, so the copy seen here is still there after the append
+        AtomicInteger available = bookInventory.get(book);
+        if (available.get() <= 0) return null;
         
-        // Create borrow record
-        Book book = books.get(isbn);
-        BorrowRecord record = new BorrowRecord(book, user, LocalDate.now());
+        // Journal first: if the append fails, inventory and loans are untouched
+        LibraryJournal current = journal;
+        if (current != null) current.appendBorrow(book.getIsbn(), user.getUserId(), borrowDate);
         
-        // Update inventory and records
-        bookInventory.put(isbn, bookInventory.get(isbn) - 1);
-        activeLoans.get(isbn).add(record);
+        publishAvailability(book, available.decrementAndGet());
+        return recordLoan(book, user, borrowDate);
+    }
+    
+    // Creates the borrow record and links it everywhere; inventory is handled by the caller
+    private BorrowRecord recordLoan(Book book, User user, LocalDate borrowDate) {
+        BorrowRecord record = new BorrowRecord(book, user, borrowDate);
+        activeLoans.get(book).computeIfAbsent(user.getUserId(), id -> new ArrayDeque<>(1)).addLast(record);
         user.addBorrowRecord(record);
-        
-        System.out.println("Book borrowed successfully: " + book.getTitle());
+        dueDateIndex.add(record);
+        return record;
+    }
+    
+    // Joins the ISBN's hold queue. The future completes with the loan as soon as a copy is handed to
+    // this user, which may be immediately; it fails if the library does not stock the book.
+    public CompletableFuture<BorrowRecord> placeHold(String isbn, User user) {
+        ReentrantLock lock = lockFor(isbn);
+        Hold hold;
+        List<Hold> served;
+        acquire(lock);
+        try {
+            if (books.get(isbn) == null) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException("Book not found in library: " + isbn));
+            }
+            Deque<Hold> queue = holds.computeIfAbsent(isbn, k -> new ArrayDeque<>());
+            for (Hold waiting : queue) {
+                if (waiting.getUser() == user) return waiting.getLoan(); // already in line
+            }
+            hold = new Hold(user);
+            queue.addLast(hold);
+            served = serveHoldsLocked(isbn, LocalDate.now());
+            if (!served.contains(hold)) addPendingHold(user, books.get(isbn).getIsbn());
+        } finally {
+            lock.unlock();
+        }
+        if (!served.isEmpty()) {
+            syncJournal();
+        }
+        completeHolds(served);
+        return hold.getLoan();
+    }
+    
+    // Publishes each handoff as a borrow and then completes the patron's future
+    private void completeHolds(List<Hold> served) {
+        for (Hold hold : served) {
+            BorrowRecord record = hold.getHandedOver();
+            publish(EventType.BORROW, record.getBook().getIsbn(), hold.getUser(), record.getBook(), null, 0.0);
+            hold.complete();
+        }
+    }
+    
+    // Leaves the queue; returns false if the user was not waiting (for instance, already served)
+    public boolean cancelHold(String isbn, User user) {
+        ReentrantLock lock = lockFor(isbn);
+        Hold cancelled = null;
+        acquire(lock);
+        try {
+            Deque<Hold> queue = holds.get(isbn);
+            if (queue == null) return false;
+            for (Iterator<Hold> it = queue.iterator(); it.hasNext(); ) {
+                Hold waiting = it.next();
+                if (waiting.getUser() == user) {
+                    it.remove();
+                    removePendingHold(user, books.get(isbn).getIsbn());
+                    cancelled = waiting;
+                    break;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (cancelled == null) return false;
+        cancelled.getLoan().cancel(false);
         return true;
     }
     
-    public synchronized boolean returnBook(String isbn, User user) {
-        List<BorrowRecord> loans = activeLoans.get(isbn);
-        if (loans == null) return false;
+    public int getHoldQueueLength(String isbn) {
+        ReentrantLock lock = lockFor(isbn);
+        acquire(lock);
+        try {
+            Deque<Hold> queue = holds.get(isbn);
+            return queue != null ? queue.size() : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Hands available copies to waiting patrons in arrival order. Patrons at their limit keep their
+    // place and are skipped. The caller completes the returned holds after releasing the stripe.
+    private List<Hold> serveHoldsLocked(String isbn, LocalDate date) {
+        Deque<Hold> queue = holds.get(isbn);
+        if (queue == null || queue.isEmpty()) return Collections.emptyList();
         
-        BorrowRecord recordToReturn = null;
-        for (BorrowRecord record : loans) {
-            if (record.getUser().getUserId().equals(user.getUserId()) && record.getReturnDate() == null) {
-                recordToReturn = record;
-                break;
+        Book book = books.get(isbn);
+        List<Hold> served = new ArrayList<>(1);
+        for (Iterator<Hold> it = queue.iterator(); it.hasNext() && bookInventory.get(isbn).get() > 0; ) {
+            Hold hold = it.next();
+            User user = hold.getUser();
+            if (hold.getLoan().isDone()) { // cancelled through its future
+                it.remove();
+                removePendingHold(user, book.getIsbn());
+                continue;
+            }
+            synchronized (user) {
+                if (!user.canBorrowMore()) continue;
+                BorrowRecord record = checkoutLocked(book, user, date);
+                if (record == null) break;
+                hold.handOver(record);
             }
+            it.remove();
+            removePendingHold(user, book.getIsbn());
+            served.add(hold);
         }
+        return served;
+    }
+    
+    // A return frees one of the user's loan slots, so holds skipped while they were at their limit
+    // may now be served. Called with no stripe held; takes each other ISBN's stripe in turn.
+    private List<Hold> serveHoldsOf(User user, String returnedIsbn, LocalDate date) {
+        Set<String> waitingFor = pendingHolds.get(user.getUserId());
+        if (waitingFor == null) return Collections.emptyList();
         
-        if (recordToReturn == null) {
-            System.out.println("No active loan found for this book and user");
-            return false;
+        List<Hold> served = new ArrayList<>();
+        for (String isbn : waitingFor.toArray(new String[0])) {
+            if (isbn.equals(returnedIsbn)) continue; // already served under the return's stripe
+            ReentrantLock lock = lockFor(isbn);
+            acquire(lock);
+            try {
+                served.addAll(serveHoldsLocked(isbn, date));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return served;
+    }
+    
+    // Called with the ISBN's stripe held; the ISBN is spelled as its stored book's
+    private void addPendingHold(User user, String isbn) {
+        pendingHolds.compute(user.getUserId(), (id, isbns) -> {
+            Set<String> set = isbns != null ? isbns : ConcurrentHashMap.newKeySet();
+            set.add(isbn);
+            return set;
+        });
+    }
+    
+    private void removePendingHold(User user, String isbn) {
+        pendingHolds.computeIfPresent(user.getUserId(), (id, isbns) -> {
+            isbns.remove(isbn);
+            return isbns.isEmpty() ? null : isbns;
+        });
+    }
+    
+    public boolean returnBook(String isbn, User user) {
+        return tryReturn(isbn, user).isSuccess();
+    }
+    
+    // The outcome and, on success, the closed loan and its fine; events go to the pipeline
+    public LoanResult tryReturn(String isbn, User user) {
+        long start = metrics.start();
+        LoanResult result = performReturn(isbn, user);
+        metrics.record(LibraryMetrics.Operation.RETURN, start, result.getOutcome());
+        return result;
+    }
+    
+    private LoanResult performReturn(String isbn, User user) {
+        ReentrantLock lock = lockFor(isbn);
+        LoanResult result;
+        List<Hold> served = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        acquire(lock);
+        try {
+            result = returnLoanLocked(isbn, user, today);
+            // The copy goes straight to the next patron in line, inside the same critical section
+            if (result.isSuccess()) served.addAll(serveHoldsLocked(isbn, today));
+        } finally {
+            lock.unlock();
+        }
+        if (result.isSuccess()) {
+            served.addAll(serveHoldsOf(user, result.getRecord().getBook().getIsbn(), today));
+            syncJournal();
+        }
+        publishReturnEvents(isbn, user, result);
+        completeHolds(served);
+        return result;
+    }
+    
+    // Batch counterpart of tryReturn: same outcomes, fines, events and metrics per request
+    public List<LoanResult> returnBooks(List<LoanRequest> requests) {
+        long start = metrics.start();
+        List<LoanResult> results = new ArrayList<>(requests.size());
+        List<Hold> served = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        int[] stripes = lockStripes(requests);
+        try {
+            for (LoanRequest request : requests) {
+                LoanResult result = returnLoanLocked(request.getIsbn(), request.getUser(), today);
+                results.add(result);
+                if (result.isSuccess()) served.addAll(serveHoldsLocked(request.getIsbn(), today));
+            }
+        } finally {
+            unlockStripes(stripes);
+        }
+        Set<User> returning = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < requests.size(); i++) {
+            User user = requests.get(i).getUser();
+            if (results.get(i).isSuccess() && returning.add(user)) served.addAll(serveHoldsOf(user, null, today));
+        }
+        syncJournal();
+        for (int i = 0; i < requests.size(); i++) {
+            LoanRequest request = requests.get(i);
+            publishReturnEvents(request.getIsbn(), request.getUser(), results.get(i));
+            metrics.record(LibraryMetrics.Operation.RETURN, start, results.get(i).getOutcome());
         }
+        completeHolds(served);
+        return results;
+    }
+    
+    // Closes the loan and prices its fine, or says why there was nothing to return
+    private LoanResult returnLoanLocked(String isbn, User user, LocalDate returnDate) {
+        BorrowRecord returned = returnLocked(isbn, user, returnDate);
+        if (returned == null) {
+            return LoanResult.of(books.get(isbn) == null ? LoanOutcome.BOOK_NOT_FOUND : LoanOutcome.NO_ACTIVE_LOAN);
+        }
+        return LoanResult.returned(returned, user.calculateFine(returned));
+    }
+    
+    // Closes the user's oldest active loan of the ISBN, or returns null if there is none
+    private BorrowRecord returnLocked(String isbn, User user, LocalDate returnDate) {
+        Map<String, Deque<BorrowRecord>> loans = activeLoans.get(isbn);
+        if (loans == null) return null;
         
-        // Mark as returned
-        recordToReturn.markReturned();
-        loans.remove(recordToReturn);
-        user.removeBorrowRecord(recordToReturn);
-        bookInventory.put(isbn, bookInventory.get(isbn) + 1);
+        // Loans are indexed by user, so the lookup no longer scans every copy on loan
+        Deque<BorrowRecord> userLoans = loans.get(user.getUserId());
+        if (userLoans == null) return null;
+        
+        // Journal first: if the append fails, the loan stays open in memory as well
+        LibraryJournal current = journal;
+        if (current != null) current.appendReturn(isbn, user.getUserId(), returnDate);
         
-        // Calculate fine if overdue
-        double fine = user.calculateFine(recordToReturn);
-        if (fine > 0) {
-            System.out.println("Fine for overdue book: $" + fine);
+        BorrowRecord recordToReturn = userLoans.pollFirst();
+        if (userLoans.isEmpty()) {
+            loans.remove(user.getUserId());
         }
         
-        System.out.println("Book returned successfully: " + recordToReturn.getBook().getTitle());
-        return true;
+        // Mark as returned
+        recordToReturn.markReturned(returnDate);
+        user.removeBorrowRecord(recordToReturn);
+        dueDateIndex.remove(recordToReturn);
+        Book book = books.get(isbn);
+        publishAvailability(book, bookInventory.get(book).incrementAndGet());
+        return recordToReturn;
+    }
+    
+    // Waits outside the stripe locks, so one fsync covers every concurrent checkout
+    private void syncJournal() {
+        LibraryJournal current = journal;
+        if (current != null) current.sync();
+    }
+    
+    // Every active loan, earliest due first
+    public List<BorrowRecord> getActiveLoans() {
+        return dueDateIndex.all();
+    }
+    
+    // Active loans whose due date is before the given date
+    public List<BorrowRecord> getOverdueLoans(LocalDate asOf) {
+        return dueDateIndex.overdueAsOf(asOf);
+    }
+    
+    // Active loans due from today through the next given number of days
+    public List<BorrowRecord> getLoansDueWithin(int days) {
+        LocalDate today = LocalDate.now();
+        return dueDateIndex.dueBetween(today, today.plusDays(days));
+    }
+    
+    // Uncontended acquisitions are only counted; contended ones pay for the clock reads and the histogram
+    private void acquire(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            metrics.recordUncontendedLock();
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        metrics.recordLockWait(System.nanoTime() - start);
+    }
+    
+    public LibraryMetrics getMetrics() {
+        return metrics;
+    }
+    
+    private ReentrantLock lockFor(String isbn) {
+        return isbnLocks[stripeOf(isbn)];
+    }
+    
+    // Hyphenation variants of one ISBN share a map entry, so they must share a stripe too
+    static int stripeOf(String isbn) {
+        long key = BookCatalog.parseIsbn13(isbn);
+        int h = key != BookCatalog.NO_ISBN ? Long.hashCode(key) : isbn.hashCode();
+        return (h ^ (h >>> 16)) & (LOCK_STRIPES - 1);
+    }
+    
+    // Snapshot loading into a new library: fills the maps, then builds each index in one pass
+    // rather than updating every index per book. The saved counts are available counts, so
+    // loans restored afterwards do not take copies again.
+    void loadBooks(List<Book> loaded, int[] available) {
+        if (books.size() != 0) {
+            throw new IllegalStateException("Snapshot books can only be loaded into an empty library");
+        }
+        BookFlyweights shared = flyweights;
+        List<Book> stored = new ArrayList<>(loaded.size());
+        List<String> isbns = new ArrayList<>(loaded.size()); // one key string per book, shared by the indexes
+        for (int i = 0; i < loaded.size(); i++) {
+            Book book = shared != null ? shared.canonical(loaded.get(i)) : loaded.get(i);
+            if (books.putIfAbsent(book, book) != null) {
+                throw new IllegalStateException("Snapshot lists ISBN " + book.getIsbn() + " twice");
+            }
+            bookInventory.put(book, new AtomicInteger(available[i]));
+            activeLoans.put(book, new HashMap<>());
+            catalog.stage(book, available[i]);
+            stored.add(book);
+            isbns.add(book.getIsbn());
+        }
+        searchIndex.addAll(isbns, stored);
+        autocompleteTrie.addAll(stored);
+        trigramIndex.addAll(isbns, stored);
+        categoryIndex.addAll(stored);
+        for (SearchCache cache : dependentCaches) {
+            cache.invalidateAll();
+        }
+    }
+    
+    void restoreLoan(String isbn, User user, LocalDate borrowDate) {
+        Book book = books.get(isbn);
+        if (book == null) {
+            throw new IllegalStateException("Loan refers to unknown book " + isbn);
+        }
+        synchronized (user) {
+            recordLoan(book, user, borrowDate);
+        }
+    }
+    
+    // Publishes anything still staged and returns the result; under withAllStripesLocked this is
+    // exactly the locked state, consistent with the active loans
+    CatalogSnapshot publishCatalog() {
+        return catalog.current();
+    }
+    
+    // Runs the action with every stripe held, giving it a consistent view of the library
+    void withAllStripesLocked(Runnable action) {
+        for (ReentrantLock lock : isbnLocks) {
+            lock.lock();
+        }
+        try {
+            action.run();
+        } finally {
+            for (int i = isbnLocks.length - 1; i >= 0; i--) {
+                isbnLocks[i].unlock();
+            }
+        }
+    }
+    
+    // Locks the distinct stripes of the requests in ascending order, so batches cannot deadlock
+    private int[] lockStripes(List<LoanRequest> requests) {
+        boolean[] needed = new boolean[LOCK_STRIPES];
+        int count = 0;
+        for (LoanRequest request : requests) {
+            int stripe = stripeOf(request.getIsbn());
+            if (!needed[stripe]) {
+                needed[stripe] = true;
+                count++;
+            }
+        }
+        int[] stripes = new int[count];
+        for (int i = 0, n = 0; i < LOCK_STRIPES; i++) {
+            if (needed[i]) stripes[n++] = i;
+        }
+        for (int stripe : stripes) {
+            acquire(isbnLocks[stripe]);
+        }
+        return stripes;
+    }
+    
+    private void unlockStripes(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            isbnLocks[stripes[i]].unlock();
+        }
     }
     
     public List<Book> searchBooks(String query) {
-        return books.values().stream()
+        return searchBooks(query, SearchMode.TOKEN);
+    }
+    
+    public List<Book> searchBooks(String query, SearchMode mode) {
+        long start = metrics.start();
+        try {
+            List<Book> cached = searchCache.get(mode, query);
+            if (cached != null) return cached;
+            
+            long version = searchCache.version();
+            List<Book> result = List.copyOf(runSearch(query, mode));
+            searchCache.put(mode, query, result, version);
+            return result;
+        } finally {
+            metrics.record(LibraryMetrics.Operation.SEARCH, start);
+        }
+    }
+    
+    public CacheStats getSearchCacheStats() {
+        return searchCache.stats();
+    }
+    
+    // Registers a cache holding results derived from this branch, so catalog changes reach it too
+    void attachSearchCache(SearchCache cache) {
+        dependentCaches.add(cache);
+    }
+    
+    private List<Book> runSearch(String query, SearchMode mode) {
+        if (mode == SearchMode.SUBSTRING) {
+            return scanBooks(query);
+        }
+        Collection<String> isbns = mode == SearchMode.FUZZY ? trigramIndex.search(query) : searchIndex.lookup(query);
+        CatalogSnapshot snapshot = catalog.current();
+        List<Book> result = new ArrayList<>();
+        for (String isbn : isbns) {
+            Book book = snapshot.getBook(isbn);
+            if (book != null) result.add(book);
+        }
+        return result;
+    }
+    
+    // Token matches with their field scores, produced on demand in index order (not ranked)
+    public Stream<ScoredBook> streamSearch(String query) {
+        List<String> queryTokens = BookSearchIndex.tokenize(query);
+        CatalogSnapshot snapshot = catalog.current();
+        return searchIndex.stream(query)
+                .map(snapshot::getBook)
+                .filter(Objects::nonNull)
+                .map(book -> new ScoredBook(book, BookSearchIndex.score(book, queryTokens)));
+    }
+    
+    // One page of ranked token matches; only offset + limit candidates are held at any time
+    public List<Book> searchBooks(String query, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit must be non-negative");
+        }
+        if (limit == 0) return Collections.emptyList();
+        int keep = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        
+        // Min-heap of the best matches so far, worst on top so it is the one evicted
+        PriorityQueue<ScoredBook> best = new PriorityQueue<>(ScoredBook.RANKING.reversed());
+        streamSearch(query).forEach(candidate -> {
+            best.offer(candidate);
+            if (best.size() > keep) best.poll();
+        });
+        
+        List<ScoredBook> ranked = new ArrayList<>(best);
+        ranked.sort(ScoredBook.RANKING);
+        return ranked.subList(Math.min(offset, ranked.size()), ranked.size()).stream()
+                .map(ScoredBook::getBook)
+                .toList();
+    }
+    
+    // Books matching a boolean category filter, in the order they were first added
+    public List<Book> searchByCategories(CategoryQuery query) {
+        return categoryIndex.query(query);
+    }
+    
+    // Category name -> number of books matching the filter in that category, largest first
+    public Map<String, Integer> getCategoryFacets(CategoryQuery query) {
+        return categoryIndex.facets(query);
+    }
+    
+    // Top completions of titles and authors starting with the prefix, at most
+    // AutocompleteTrie.MAX_SUGGESTIONS of them whatever the limit
+    public List<String> autocomplete(String prefix, int limit) {
+        return autocompleteTrie.complete(prefix, limit).stream()
+                .map(Suggestion::getText)
+                .toList();
+    }
+    
+    List<Suggestion> autocompleteSuggestions(String prefix, int limit) {
+        return autocompleteTrie.complete(prefix, limit);
+    }
+    
+    int autocompleteCount(String text) {
+        return autocompleteTrie.count(text);
+    }
+    
+    List<Suggestion> allAutocompleteSuggestions(String prefix) {
+        return autocompleteTrie.completeAll(prefix);
+    }
+    
+    private List<Book> scanBooks(String query) {
+        return catalog.current().getBooks().stream()
                 .filter(book -> book.getTitle().toLowerCase().contains(query.toLowerCase()) ||
                                book.getAuthor().toLowerCase().contains(query.toLowerCase()) ||
                                book.getCategories().stream().anyMatch(cat -> 
@@ -311,22 +1214,57 @@ class Library {
 
 // Library System - Main controller
 class LibrarySystem {
+    // Shared by all systems; workers are daemon threads. Sized above the core count so one
+    // stalled branch cannot hold back every other branch's search.
+    private static final ForkJoinPool SEARCH_POOL =
+            new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    
     private Map<String, Library> libraries;
     private Map<String, User> users;
+    private final AvailabilityIndex availabilityIndex;
+    private final BookFlyweights flyweights; // books shared by this system's libraries
+    private final SearchCache searchCache; // cross-branch results
+    private final LibraryMetrics metrics;   // cross-branch search latency
     
     public LibrarySystem() {
         this.libraries = new HashMap<>();
         this.users = new HashMap<>();
+        this.availabilityIndex = new AvailabilityIndex();
+        this.flyweights = new BookFlyweights();
+        this.searchCache = new SearchCache();
+        this.metrics = new LibraryMetrics();
     }
     
     public void addLibrary(Library library) {
         libraries.put(library.getName(), library);
+        library.attachFlyweights(flyweights);
+        library.attachAvailabilityIndex(availabilityIndex);
+        library.attachSearchCache(searchCache);
+        searchCache.invalidateAll(); // a new branch changes every cross-branch result
     }
     
     public void addUser(User user) {
         users.put(user.getUserId(), user);
     }
     
+    // Recovers a branch from its journal using the registered users and adds it to the system
+    public Library openLibrary(String name, String address, Path journalPath) {
+        Library library = Library.recover(name, address, journalPath, users::get);
+        addLibrary(library);
+        return library;
+    }
+    
+    public void exportSnapshot(Path path) {
+        LibrarySnapshot.write(libraries.values(), path);
+    }
+    
+    // Loads every branch in the snapshot, resolving loans against the registered users
+    public List<Library> importSnapshot(Path path) {
+        List<Library> loaded = LibrarySnapshot.read(path, users::get, flyweights);
+        loaded.forEach(this::addLibrary);
+        return loaded;
+    }
+    
     public Library getLibrary(String name) {
         return libraries.get(name);
     }
@@ -335,11 +1273,117 @@ class LibrarySystem {
         return users.get(userId);
     }
     
+    // Branches with a copy of the ISBN available right now -> how many, in one lookup
+    public Map<String, Integer> getAvailabilityByBranch(String isbn) {
+        return availabilityIndex.availability(isbn);
+    }
+    
     public List<Book> searchBooksAcrossLibraries(String query) {
-        Set<Book> allBooks = new HashSet<>();
+        return searchBooksAcrossLibraries(query, SearchMode.TOKEN);
+    }
+    
+    public List<Book> searchBooksAcrossLibraries(String query, SearchMode mode) {
+        return searchBooksAcrossLibraries(query, mode, null);
+    }
+    
+    public CacheStats getSearchCacheStats() {
+        return searchCache.stats();
+    }
+    
+    // Searches every branch in parallel on a fork-join pool. Branches that have not
+    // answered when the deadline passes are skipped, so the result may be partial; null waits for all.
+    public List<Book> searchBooksAcrossLibraries(String query, SearchMode mode, Duration deadline) {
+        long start = metrics.start();
+        try {
+            return searchAllBranches(query, mode, deadline);
+        } finally {
+            metrics.record(LibraryMetrics.Operation.CROSS_BRANCH_SEARCH, start);
+        }
+    }
+    
+    public LibraryMetrics getMetrics() {
+        return metrics;
+    }
+    
+    private List<Book> searchAllBranches(String query, SearchMode mode, Duration deadline) {
+        List<Book> cached = searchCache.get(mode, query);
+        if (cached != null) return cached;
+        
+        long version = searchCache.version();
+        long deadlineNanos = deadline != null ? System.nanoTime() + deadline.toNanos() : 0;
+        Set<Book> allBooks = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Void>> searches = new ArrayList<>(libraries.size());
+        for (Library library : libraries.values()) {
+            searches.add(CompletableFuture.runAsync(
+                    () -> allBooks.addAll(library.searchBooks(query, mode)), SEARCH_POOL));
+        }
+        
+        CompletableFuture<Void> all = CompletableFuture.allOf(searches.toArray(new CompletableFuture[0]));
+        try {
+            if (deadline == null) {
+                all.get();
+            } else {
+                all.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            searches.forEach(search -> search.cancel(false)); // stragglers still running are ignored
+            return new ArrayList<>(allBooks); // partial, never cached
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>(allBooks);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Branch search failed", e.getCause());
+        }
+        List<Book> result = List.copyOf(allBooks);
+        searchCache.put(mode, query, result, version);
+        return result;
+    }
+    
+    // Top completions across branches, ranked by book count summed over every branch, then
+    // alphabetically. Like a single branch, returns at most AutocompleteTrie.MAX_SUGGESTIONS.
+    public List<String> autocomplete(String prefix, int limit) {
+        int wanted = Math.min(limit, AutocompleteTrie.MAX_SUGGESTIONS);
+        if (wanted <= 0) return List.of();
+        
+        // Candidates are the union of the branches' cached top lists, scored by their exact totals.
+        // A completion missing from a full list has at most that list's last count in its branch,
+        // so the sum of those counts bounds the total of every completion left out.
+        Map<String, String> candidates = new LinkedHashMap<>(); // normalized -> first spelling seen
+        int bound = 0;
         for (Library library : libraries.values()) {
-            allBooks.addAll(library.searchBooks(query));
+            List<Suggestion> top = library.autocompleteSuggestions(prefix, AutocompleteTrie.MAX_SUGGESTIONS);
+            for (Suggestion suggestion : top) {
+                candidates.putIfAbsent(AutocompleteTrie.normalize(suggestion.getText()), suggestion.getText());
+            }
+            if (top.size() == AutocompleteTrie.MAX_SUGGESTIONS) bound += top.get(top.size() - 1).getBookCount();
+        }
+        List<Suggestion> ranked = new ArrayList<>(candidates.size());
+        for (String text : candidates.values()) {
+            int total = 0;
+            for (Library library : libraries.values()) {
+                total += library.autocompleteCount(text);
+            }
+            ranked.add(new Suggestion(text, total));
+        }
+        ranked.sort(Suggestion.RANKING);
+        
+        // Exact unless a left-out completion could still tie or beat the last one kept
+        boolean exact = bound == 0 || (ranked.size() >= wanted && ranked.get(wanted - 1).getBookCount() > bound);
+        if (!exact) ranked = mergeAllCompletions(prefix);
+        return ranked.stream().limit(wanted).map(Suggestion::getText).toList();
+    }
+    
+    // Fallback: every completion of the prefix in every branch, summed and ranked
+    private List<Suggestion> mergeAllCompletions(String prefix) {
+        Map<String, Suggestion> totals = new HashMap<>();
+        for (Library library : libraries.values()) {
+            for (Suggestion suggestion : library.allAutocompleteSuggestions(prefix)) {
+                totals.merge(AutocompleteTrie.normalize(suggestion.getText()), suggestion,
+                        (a, b) -> new Suggestion(a.getText(), a.getBookCount() + b.getBookCount()));
+            }
         }
-        return new ArrayList<>(allBooks);
+        List<Suggestion> ranked = new ArrayList<>(totals.values());
+        ranked.sort(Suggestion.RANKING);
+        return ranked;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,192 @@
+package com.lld.practice.questions;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms per operation, stripe lock-wait time and outcome counters.
+ *
+ * Callers bracket an operation with start() and record(): when disabled, start() is a
+ * volatile read and record() returns immediately, so instrumentation can stay compiled in.
+ * Every outcome is counted, but only a random sample of operations, chosen independently by
+ * each thread, reads the clock and enters a latency histogram: two clock reads and a histogram
+ * update cost more than the operations being measured. Percentiles come from the sample;
+ * histogram counts are the number of sampled operations.
+ */
+class LibraryMetrics implements LibraryMetricsMXBean {
+    static final long NOT_TIMED = Long.MIN_VALUE;       // disabled: record() does nothing
+    static final long NOT_SAMPLED = Long.MIN_VALUE + 1; // enabled, but not timed this time
+    static final int DEFAULT_SAMPLE_INTERVAL = 16;      // time about 1 in 16 operations
+    private static final double[] REPORTED_PERCENTILES = {50, 90, 99, 99.9};
+
+    enum Operation {
+        BORROW,
+        RETURN,
+        SEARCH,
+        CROSS_BRANCH_SEARCH
+    }
+
+    private volatile boolean enabled = true;
+    private volatile int sampleMask = DEFAULT_SAMPLE_INTERVAL - 1;
+    private final LatencyHistogram[] latencies;
+    private final LongAdder[][] outcomes; // operation -> outcome -> count
+    private final LatencyHistogram lockWait; // contended acquisitions only
+    private final LongAdder uncontendedLocks;
+
+    public LibraryMetrics() {
+        Operation[] operations = Operation.values();
+        this.latencies = new LatencyHistogram[operations.length];
+        this.outcomes = new LongAdder[operations.length][LoanOutcome.values().length];
+        for (int op = 0; op < operations.length; op++) {
+            latencies[op] = new LatencyHistogram();
+            for (int outcome = 0; outcome < outcomes[op].length; outcome++) {
+                outcomes[op][outcome] = new LongAdder();
+            }
+        }
+        this.lockWait = new LatencyHistogram();
+        this.uncontendedLocks = new LongAdder();
+    }
+
+    public long start() {
+        if (!enabled) return NOT_TIMED;
+        if ((ThreadLocalRandom.current().nextInt() & sampleMask) != 0) return NOT_SAMPLED;
+        return System.nanoTime();
+    }
+
+    public void record(Operation operation, long start) {
+        if (start <= NOT_SAMPLED) return;
+        latencies[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    public void record(Operation operation, long start, LoanOutcome outcome) {
+        if (start == NOT_TIMED) return;
+        outcomes[operation.ordinal()][outcome.ordinal()].increment();
+        if (start != NOT_SAMPLED) latencies[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    // A lock taken without waiting is only counted; its zero wait never touches the histogram
+    public void recordUncontendedLock() {
+        if (enabled) uncontendedLocks.increment();
+    }
+    
+    public void recordLockWait(long nanos) {
+        if (enabled) lockWait.record(nanos);
+    }
+
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getOutcomeCount(Operation operation, LoanOutcome outcome) {
+        return outcomes[operation.ordinal()][outcome.ordinal()].sum();
+    }
+
+    // Registers this instance with the platform MBean server under the library's name
+    public ObjectName registerMBean(String libraryName) {
+        try {
+            ObjectName name = new ObjectName("com.lld.practice.questions:type=LibraryMetrics,name="
+                    + ObjectName.quote(libraryName));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(this, name);
+            return name;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics MBean for " + libraryName, e);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getTimingSampleInterval() {
+        return sampleMask + 1;
+    }
+
+    // 1 times every operation; larger powers of two time about one in that many
+    @Override
+    public void setTimingSampleInterval(int interval) {
+        if (interval < 1 || Integer.bitCount(interval) != 1) {
+            throw new IllegalArgumentException("Sample interval must be a positive power of two: " + interval);
+        }
+        this.sampleMask = interval - 1;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyNanos() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            String prefix = key(operation);
+            result.put(prefix + ".count", histogram.getCount());
+            result.put(prefix + ".max", histogram.getMaxNanos());
+            for (double percentile : REPORTED_PERCENTILES) {
+                String label = percentile == Math.rint(percentile)
+                        ? String.valueOf((long) percentile) : String.valueOf(percentile);
+                result.put(prefix + ".p" + label, histogram.getValueAtPercentile(percentile));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getOutcomeCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Operation operation : Operation.values()) {
+            for (LoanOutcome outcome : LoanOutcome.values()) {
+                long count = getOutcomeCount(operation, outcome);
+                if (count > 0) result.put(key(operation) + "." + outcome, count);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long getLockAcquisitions() {
+        return uncontendedLocks.sum() + lockWait.getCount();
+    }
+
+    @Override
+    public long getLockWaitTotalNanos() {
+        return lockWait.getTotalNanos();
+    }
+
+    @Override
+    // Over all acquisitions: uncontended ones count as zero waits ahead of the histogram
+    public long getLockWaitP99Nanos() {
+        long uncontended = uncontendedLocks.sum();
+        long contended = lockWait.getCount();
+        long rank = (long) Math.ceil(0.99 * (uncontended + contended));
+        if (rank <= uncontended) return 0;
+        return lockWait.getValueAtPercentile(100.0 * (rank - uncontended) / contended);
+    }
+
+    @Override
+    public void reset() {
+        for (int op = 0; op < latencies.length; op++) {
+            latencies[op].reset();
+            for (LongAdder counter : outcomes[op]) {
+                counter.reset();
+            }
+        }
+        lockWait.reset();
+        uncontendedLocks.reset();
+    }
+
+    private static String key(Operation operation) {
+        return operation.name().toLowerCase(Locale.ROOT);
+    }
+}
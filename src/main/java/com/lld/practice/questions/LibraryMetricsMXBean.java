@@ -0,0 +1,29 @@
+package com.lld.practice.questions;
+
+import java.util.Map;
+
+/**
+ * JMX view of LibraryMetrics. Latency keys look like "borrow.p99"; outcome keys like
+ * "borrow.NOT_AVAILABLE".
+ */
+public interface LibraryMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    int getTimingSampleInterval();
+
+    void setTimingSampleInterval(int interval);
+
+    Map<String, Long> getLatencyNanos();
+
+    Map<String, Long> getOutcomeCounts();
+
+    long getLockAcquisitions();
+
+    long getLockWaitTotalNanos();
+
+    long getLockWaitP99Nanos();
+
+    void reset();
+}
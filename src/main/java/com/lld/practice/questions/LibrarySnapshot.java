@@ -0,0 +1,185 @@
+package com.lld.practice.questions;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Versioned binary snapshot of one or more libraries: books, available inventory and active loans.
+ *
+ * Layout: magic, version, library count, then per library its name and address, the books with
+ * their available copies, and the active loans as (ISBN, user id, borrow date).
+ * Loading reads the file through memory-mapped windows and bulk-loads the books, building each
+ * index once instead of replaying addBook calls.
+ */
+class LibrarySnapshot {
+    private static final int MAGIC = 0x4C494253; // "LIBS"
+    private static final int VERSION = 1;
+    private static final long MAP_WINDOW = 256L * 1024 * 1024;
+
+    private LibrarySnapshot() {}
+
+    public static void write(Collection<Library> libraries, Path path) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(libraries.size());
+            for (Library library : libraries) {
+                library.withAllStripesLocked(() -> writeLibrary(out, library));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + path, e);
+        }
+    }
+
+    // Books are registered in the given flyweights while loading, so loaded libraries share them
+    public static List<Library> read(Path path, Function<String, User> users, BookFlyweights flyweights) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedInput in = new MappedInput(channel);
+            if (in.getInt() != MAGIC) {
+                throw new IllegalStateException("Not a library snapshot: " + path);
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unsupported snapshot version " + version);
+            }
+
+            int libraryCount = in.getInt();
+            List<Library> libraries = new ArrayList<>(libraryCount);
+            for (int i = 0; i < libraryCount; i++) {
+                libraries.add(readLibrary(in, users, flyweights));
+            }
+            return libraries;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + path, e);
+        }
+    }
+
+    private static void writeLibrary(DataOutputStream out, Library library) {
+        try {
+            writeString(out, library.getName());
+            writeString(out, library.getAddress());
+
+            CatalogSnapshot catalog = library.publishCatalog();
+            List<Book> books = catalog.getBooks();
+            out.writeInt(books.size());
+            for (Book book : books) {
+                writeString(out, book.getIsbn());
+                writeString(out, book.getTitle());
+                writeString(out, book.getAuthor());
+                List<String> categories = book.getCategories();
+                out.writeInt(categories.size());
+                for (String category : categories) {
+                    writeString(out, category);
+                }
+                out.writeInt(catalog.getAvailableCopies(book.getIsbn()));
+            }
+
+            List<BorrowRecord> loans = library.getActiveLoans();
+            out.writeInt(loans.size());
+            for (BorrowRecord loan : loans) {
+                writeString(out, loan.getBook().getIsbn());
+                writeString(out, loan.getUser().getUserId());
+                out.writeLong(loan.getBorrowDate().toEpochDay());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Library readLibrary(MappedInput in, Function<String, User> users, BookFlyweights flyweights) throws IOException {
+        Library library = new Library(in.getString(), in.getString());
+        library.attachFlyweights(flyweights);
+
+        // Raw records first, then one bulk load that builds each index once
+        int bookCount = in.getInt();
+        List<Book> books = new ArrayList<>(bookCount);
+        int[] available = new int[bookCount];
+        for (int i = 0; i < bookCount; i++) {
+            String isbn = in.getString();
+            String title = in.getString();
+            String author = in.getString();
+            int categoryCount = in.getInt();
+            List<String> categories = new ArrayList<>(categoryCount);
+            for (int c = 0; c < categoryCount; c++) {
+                categories.add(in.getString());
+            }
+            books.add(new Book(isbn, title, author, categories));
+            available[i] = in.getInt();
+        }
+        library.loadBooks(books, available);
+
+        int loanCount = in.getInt();
+        for (int i = 0; i < loanCount; i++) {
+            String isbn = in.getString();
+            String userId = in.getString();
+            LocalDate borrowDate = LocalDate.ofEpochDay(in.getLong());
+            User user = users.apply(userId);
+            if (user == null) {
+                throw new IllegalStateException("Snapshot refers to unknown user " + userId);
+            }
+            library.restoreLoan(isbn, user, borrowDate);
+        }
+        return library;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // Sequential reader that slides a memory-mapped window over the file
+    private static final class MappedInput {
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        MappedInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(MAP_WINDOW, size));
+        }
+
+        int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return window.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return window.getLong();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            ensure(length);
+            byte[] bytes = new byte[length];
+            window.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (window.remaining() >= bytes) return;
+            windowStart += window.position();
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(MAP_WINDOW, size - windowStart));
+            if (window.remaining() < bytes) {
+                throw new EOFException("Snapshot is truncated");
+            }
+        }
+    }
+}
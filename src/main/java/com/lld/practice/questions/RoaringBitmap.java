@@ -0,0 +1,449 @@
+package com.lld.practice.questions;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints, after Roaring bitmaps.
+ *
+ * Values are split by their high 16 bits into chunks. A chunk with at most 4096 values is a
+ * sorted char array; a denser one is a 65536-bit bitmap. A bitmap only turns back into an
+ * array once it drops to 3072 values, so add/remove around the switch point does not convert
+ * the chunk every time. Set operations work chunk by chunk and pick the cheapest pairing
+ * of container kinds, so AND/OR/ANDNOT cost roughly the size of the compressed data rather
+ * than the value range.
+ *
+ * Not thread-safe; callers guard it.
+ */
+class RoaringBitmap {
+    private char[] keys;           // high 16 bits, sorted
+    private Container[] containers; // parallel to keys
+    private int size;
+
+    public RoaringBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    public void add(int value) {
+        char high = (char) (value >>> 16);
+        int i = indexOf(high);
+        if (i < 0) {
+            i = -i - 1;
+            insertAt(i, high, new ArrayContainer());
+        }
+        containers[i] = containers[i].add((char) value);
+    }
+
+    public void remove(int value) {
+        int i = indexOf((char) (value >>> 16));
+        if (i < 0) return;
+        Container container = containers[i].remove((char) value);
+        if (container.cardinality() == 0) {
+            removeAt(i);
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    public boolean contains(int value) {
+        int i = indexOf((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Values in ascending order
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, size));
+        copy.containers = new Container[copy.keys.length];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container c = a.containers[i].and(b.containers[j]);
+                if (c.cardinality() > 0) result.append(a.keys[i], c);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                result.append(a.keys[i], a.containers[i].copy());
+                i++;
+            } else if (i == a.size || a.keys[i] > b.keys[j]) {
+                result.append(b.keys[j], b.containers[j].copy());
+                j++;
+            } else {
+                result.append(a.keys[i], a.containers[i].or(b.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            while (j < b.size && b.keys[j] < a.keys[i]) j++;
+            Container c = j < b.size && b.keys[j] == a.keys[i]
+                    ? a.containers[i].andNot(b.containers[j])
+                    : a.containers[i].copy();
+            if (c.cardinality() > 0) result.append(a.keys[i], c);
+        }
+        return result;
+    }
+
+    // |a AND b| without building the intersection; this is what facet counts use
+    public static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        int total = 0;
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                total += a.containers[i].andCardinality(b.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    private int indexOf(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private void append(char high, Container container) {
+        insertAt(size, high, container);
+    }
+
+    private void insertAt(int i, char high, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = high;
+        containers[i] = container;
+        size++;
+    }
+
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+        containers[--size] = null;
+    }
+
+    // Mutators return the container to keep, which may have switched representation
+    private abstract static class Container {
+        static final int MAX_ARRAY_SIZE = 4096;
+        static final int MIN_BITMAP_SIZE = 3072; // below MAX_ARRAY_SIZE for hysteresis
+
+        abstract Container add(char value);
+        abstract Container remove(char value);
+        abstract boolean contains(char value);
+        abstract int cardinality();
+        abstract Container copy();
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract Container and(Container other);
+        abstract Container or(Container other);
+        abstract Container andNot(Container other);
+        abstract int andCardinality(Container other);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) return this;
+            if (cardinality == MAX_ARRAY_SIZE) return toBitmap().add(value);
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[cardinality];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < cardinality && j < o.cardinality) {
+                    if (values[i] < o.values[j]) i++;
+                    else if (values[i] > o.values[j]) j++;
+                    else { out[n++] = values[i]; i++; j++; }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) out[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) return other.or(this);
+            ArrayContainer o = (ArrayContainer) other;
+            if (cardinality + o.cardinality > MAX_ARRAY_SIZE) {
+                BitmapContainer bitmap = toBitmap();
+                for (int j = 0; j < o.cardinality; j++) bitmap.set(o.values[j]);
+                return bitmap.shrinkIfSparse();
+            }
+            char[] out = new char[cardinality + o.cardinality];
+            int i = 0, j = 0, n = 0;
+            while (i < cardinality || j < o.cardinality) {
+                if (j == o.cardinality || (i < cardinality && values[i] < o.values[j])) out[n++] = values[i++];
+                else if (i == cardinality || values[i] > o.values[j]) out[n++] = o.values[j++];
+                else { out[n++] = values[i]; i++; j++; }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] out = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) out[n++] = values[i];
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) count++;
+            }
+            return count;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        void set(char value) {
+            long before = words[value >>> 6];
+            long after = before | (1L << value);
+            words[value >>> 6] = after;
+            if (before != after) cardinality++;
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            long after = before & ~(1L << value);
+            words[value >>> 6] = after;
+            if (before != after) cardinality--;
+            return shrinkIfSparse();
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int w = 0; w < words.length; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    action.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        Container shrinkIfSparse() {
+            if (cardinality > MIN_BITMAP_SIZE) return this;
+            char[] values = new char[Math.max(4, cardinality)];
+            int[] n = {0};
+            forEach(0, v -> values[n[0]++] = (char) v);
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] o = ((BitmapContainer) other).words;
+            long[] out = new long[1024];
+            int count = 0;
+            for (int w = 0; w < 1024; w++) {
+                out[w] = words[w] & o[w];
+                count += Long.bitCount(out[w]);
+            }
+            return new BitmapContainer(out, count).shrinkIfSparse();
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = new BitmapContainer(words.clone(), cardinality);
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int j = 0; j < o.cardinality; j++) result.set(o.values[j]);
+                return result;
+            }
+            long[] o = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int w = 0; w < 1024; w++) {
+                result.words[w] |= o[w];
+                count += Long.bitCount(result.words[w]);
+            }
+            result.cardinality = count;
+            return result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] out = words.clone();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int j = 0; j < o.cardinality; j++) out[o.values[j] >>> 6] &= ~(1L << o.values[j]);
+            } else {
+                long[] o = ((BitmapContainer) other).words;
+                for (int w = 0; w < 1024; w++) out[w] &= ~o[w];
+            }
+            int count = 0;
+            for (long word : out) count += Long.bitCount(word);
+            return new BitmapContainer(out, count).shrinkIfSparse();
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) return other.andCardinality(this);
+            long[] o = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int w = 0; w < 1024; w++) {
+                count += Long.bitCount(words[w] & o[w]);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.lld.practice.questions;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of search results, least recently used evicted first, with a TTL per entry.
+ *
+ * Queries are normalized per mode, so "Effective JAVA" and "java effective" share an entry.
+ * Entries are spread over independently locked segments, each an access-ordered LRU over its
+ * share of the capacity, so concurrent searches for different queries rarely meet on a lock.
+ * Eviction is therefore LRU per segment, which approximates LRU over the whole cache.
+ *
+ * A catalog change is O(1): it takes the next version number and is logged in a small ring.
+ * Every entry remembers the version its result is known to be valid at, and a hit first
+ * checks the changes logged since then against its query, dropping the entry only if a changed
+ * book matches it (fuzzy entries are dropped on any change, because a new word can reshuffle
+ * fuzzy candidates). An entry that fell behind the ring is treated as stale.
+ */
+class SearchCache {
+    static final int DEFAULT_MAX_ENTRIES = 1024;
+    static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+    private static final int MAX_SEGMENTS = 16;      // power of two
+    private static final int MIN_SEGMENT_ENTRIES = 64; // smaller caches use fewer segments, down to one exact LRU
+    private static final int CHANGE_LOG = 256;  // power of two
+
+    private final long ttlNanos;
+    private final LongSupplier clock; // nanoseconds, System.nanoTime outside tests
+    private final Segment[] segments;
+    private final AtomicLong version;                      // bumped by every change
+    private final AtomicReferenceArray<Change> changes;    // version & (CHANGE_LOG - 1) -> change
+    private volatile long clearedAt;                       // entries valid before this version are gone
+
+    public SearchCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public SearchCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    SearchCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.clock = clock;
+        int count = Math.min(MAX_SEGMENTS, Math.max(1, Integer.highestOneBit(maxEntries / MIN_SEGMENT_ENTRIES)));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment((maxEntries + count - 1) / count);
+        }
+        this.version = new AtomicLong();
+        this.changes = new AtomicReferenceArray<>(CHANGE_LOG);
+    }
+
+    public List<Book> get(SearchMode mode, String query) {
+        Key key = new Key(mode, query);
+        return segmentFor(key).get(key, this);
+    }
+
+    // Read before computing a result and pass to put; changes after it are checked on every hit
+    public long version() {
+        return version.get();
+    }
+
+    public void put(SearchMode mode, String query, List<Book> result, long versionSeen) {
+        if (versionSeen < clearedAt) return;
+        Key key = new Key(mode, query);
+        segmentFor(key).put(key, new Entry(result, versionSeen, clock.getAsLong() + ttlNanos));
+    }
+
+    // Records that this book was added, replaced or removed; affected entries go on their next hit
+    public void invalidate(Book book) {
+        long next = version.incrementAndGet();
+        changes.set((int) next & (CHANGE_LOG - 1), new Change(next, book));
+    }
+
+    public void invalidateAll() {
+        clearedAt = version.incrementAndGet();
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public CacheStats stats() {
+        long hits = 0, misses = 0, evictions = 0, invalidations = 0;
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+                misses += segment.misses;
+                evictions += segment.evictions;
+                invalidations += segment.invalidations;
+                size += segment.entries.size();
+            }
+        }
+        return new CacheStats(hits, misses, evictions, invalidations, size);
+    }
+
+    private Segment segmentFor(Key key) {
+        int h = key.hash;
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    // True if no change logged after the entry's version affects its query; advances the entry if so
+    private boolean stillValid(Key key, Entry entry) {
+        if (entry.validAt < clearedAt) return false;
+        long current = version.get();
+        if (current - entry.validAt > CHANGE_LOG) return false;
+        for (long v = entry.validAt + 1; v <= current; v++) {
+            Change change = changes.get((int) v & (CHANGE_LOG - 1));
+            if (change == null || change.version != v) return false; // not logged yet, or overwritten
+            boolean affected = switch (key.mode) {
+                case FUZZY -> true;
+                case SUBSTRING -> containsSubstring(change.book, key.query);
+                case TOKEN -> BookSearchIndex.tokensOf(change.book).containsAll(key.tokens);
+            };
+            if (affected) return false;
+        }
+        entry.validAt = current;
+        return true;
+    }
+
+    // Mirrors Library's substring scan
+    private static boolean containsSubstring(Book book, String lowerQuery) {
+        if (book.getTitle().toLowerCase().contains(lowerQuery)) return true;
+        if (book.getAuthor().toLowerCase().contains(lowerQuery)) return true;
+        for (String category : book.getCategories()) {
+            if (category.toLowerCase().contains(lowerQuery)) return true;
+        }
+        return false;
+    }
+
+    // One LRU slice of the cache; all state is guarded by the segment's monitor
+    private static final class Segment {
+        final int maxEntries;
+        final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // access order, eldest first
+        long hits;
+        long misses;
+        long evictions;
+        long invalidations;
+
+        Segment(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        synchronized List<Book> get(Key key, SearchCache cache) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt - cache.clock.getAsLong() <= 0) {
+                    entries.remove(key);
+                } else if (!cache.stillValid(key, entry)) {
+                    entries.remove(key);
+                    invalidations++;
+                } else {
+                    hits++;
+                    return entry.result;
+                }
+            }
+            misses++;
+            return null;
+        }
+
+        synchronized void put(Key key, Entry entry) {
+            entries.put(key, entry);
+            if (entries.size() > maxEntries) {
+                Iterator<Key> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions++;
+            }
+        }
+
+        synchronized void clear() {
+            invalidations += entries.size();
+            entries.clear();
+        }
+    }
+
+    private static final class Key {
+        final SearchMode mode;
+        final String query;       // lower-cased, for substring matching
+        final List<String> tokens; // sorted distinct tokens, for token and fuzzy matching
+        final int hash;
+
+        Key(SearchMode mode, String rawQuery) {
+            this.mode = mode;
+            if (mode == SearchMode.SUBSTRING) {
+                this.query = rawQuery.toLowerCase();
+                this.tokens = Collections.emptyList();
+            } else {
+                this.query = "";
+                this.tokens = new ArrayList<>(new TreeSet<>(BookSearchIndex.tokenize(rawQuery)));
+            }
+            this.hash = Objects.hash(mode, query, tokens);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return mode == other.mode && query.equals(other.query) && tokens.equals(other.tokens);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        final List<Book> result;
+        final long expiresAt;
+        long validAt; // catalog version the result is known to match; guarded by its segment
+
+        Entry(List<Book> result, long validAt, long expiresAt) {
+            this.result = result;
+            this.validAt = validAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class Change {
+        final long version;
+        final Book book;
+
+        Change(long version, Book book) {
+            this.version = version;
+            this.book = book;
+        }
+    }
+}
+
+class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int size;
+
+    public CacheStats(long hits, long misses, long evictions, long invalidations, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.size = size;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    public long getInvalidations() { return invalidations; }
+    public int getSize() { return size; }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats{hits=%d, misses=%d, evictions=%d, invalidations=%d, size=%d, hitRate=%.2f}",
+                hits, misses, evictions, invalidations, size, getHitRate());
+    }
+}
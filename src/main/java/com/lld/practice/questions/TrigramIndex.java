@@ -0,0 +1,168 @@
+package com.lld.practice.questions;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typo-tolerant search over title and author words.
+ * Query words are matched against the vocabulary through shared trigrams first,
+ * and bounded edit distance only runs on the best few candidate words,
+ * never on every book.
+ */
+class TrigramIndex {
+    private static final int MAX_CANDIDATES_PER_TOKEN = 32;
+
+    private final Map<String, Set<String>> tokenIsbns;    // word -> ISBNs
+    private final Map<String, Set<String>> trigramTokens; // trigram -> words
+
+    public TrigramIndex() {
+        this.tokenIsbns = new ConcurrentHashMap<>();
+        this.trigramTokens = new ConcurrentHashMap<>();
+    }
+
+    public void add(String isbn, Book book) {
+        for (String token : tokensOf(book)) {
+            tokenIsbns(token, 1).add(isbn);
+        }
+    }
+
+    // Bulk load: collects every word's postings first, so each new word is split into trigrams
+    // once and each set is filled once at its final size
+    public void addAll(List<String> isbns, List<Book> books) {
+        Map<String, List<String>> collected = new HashMap<>();
+        for (int i = 0; i < books.size(); i++) {
+            for (String token : tokensOf(books.get(i))) {
+                collected.computeIfAbsent(token, t -> new ArrayList<>()).add(isbns.get(i));
+            }
+        }
+        collected.forEach((token, tokenIsbns) -> tokenIsbns(token, tokenIsbns.size()).addAll(tokenIsbns));
+    }
+
+    private Set<String> tokenIsbns(String token, int expected) {
+        return tokenIsbns.computeIfAbsent(token, t -> {
+            for (String trigram : trigrams(t)) {
+                trigramTokens.computeIfAbsent(trigram, g -> ConcurrentHashMap.newKeySet()).add(t);
+            }
+            return ConcurrentHashMap.newKeySet(expected);
+        });
+    }
+
+    // Words stay in the vocabulary; an empty posting list simply matches nothing
+    public void remove(String isbn, Book book) {
+        for (String token : tokensOf(book)) {
+            Set<String> isbns = tokenIsbns.get(token);
+            if (isbns != null) {
+                isbns.remove(isbn);
+            }
+        }
+    }
+
+    // ISBNs matching every query word within its edit budget, best matches first
+    public List<String> search(String query) {
+        List<String> queryTokens = BookSearchIndex.tokenize(query);
+        if (queryTokens.isEmpty()) return Collections.emptyList();
+
+        Map<String, Integer> totalDistance = null;
+        for (String queryToken : queryTokens) {
+            Map<String, Integer> distances = new HashMap<>();
+            for (Map.Entry<String, Integer> match : matchToken(queryToken).entrySet()) {
+                Set<String> isbns = tokenIsbns.get(match.getKey());
+                for (String isbn : isbns) {
+                    distances.merge(isbn, match.getValue(), Math::min);
+                }
+            }
+            if (totalDistance == null) {
+                totalDistance = distances;
+            } else {
+                totalDistance.keySet().retainAll(distances.keySet());
+                totalDistance.replaceAll((isbn, d) -> d + distances.get(isbn));
+            }
+            if (totalDistance.isEmpty()) return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>(totalDistance.keySet());
+        Map<String, Integer> ranking = totalDistance;
+        result.sort(Comparator.comparingInt((String isbn) -> ranking.get(isbn)).thenComparing(isbn -> isbn));
+        return result;
+    }
+
+    // Vocabulary words within the edit budget of the query word -> their distance
+    private Map<String, Integer> matchToken(String queryToken) {
+        int maxEdits = maxEdits(queryToken);
+        Map<String, Integer> matches = new HashMap<>();
+        if (tokenIsbns.containsKey(queryToken)) {
+            matches.put(queryToken, 0);
+        }
+        if (maxEdits == 0) return matches;
+
+        List<String> queryTrigrams = trigrams(queryToken);
+        Map<String, Integer> overlap = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            Set<String> tokens = trigramTokens.get(trigram);
+            if (tokens == null) continue;
+            for (String token : tokens) {
+                overlap.merge(token, 1, Integer::sum);
+            }
+        }
+
+        // Each edit destroys at most three trigrams, so fewer shared ones cannot be within budget
+        int minOverlap = Math.max(1, queryTrigrams.size() - 3 * maxEdits);
+        overlap.entrySet().stream()
+                .filter(e -> e.getValue() >= minOverlap)
+                .filter(e -> Math.abs(e.getKey().length() - queryToken.length()) <= maxEdits)
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(MAX_CANDIDATES_PER_TOKEN)
+                .forEach(e -> {
+                    int distance = boundedEditDistance(queryToken, e.getKey(), maxEdits);
+                    if (distance <= maxEdits) {
+                        matches.merge(e.getKey(), distance, Math::min);
+                    }
+                });
+        return matches;
+    }
+
+    private static int maxEdits(String token) {
+        if (token.length() <= 2) return 0;
+        return token.length() <= 5 ? 1 : 2;
+    }
+
+    // Levenshtein distance, giving up with maxEdits + 1 once every cell of a row exceeds the bound
+    static int boundedEditDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) return maxEdits + 1;
+
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) return maxEdits + 1;
+            int[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+
+    // Trigrams of the word padded with a boundary marker on each side
+    static List<String> trigrams(String token) {
+        String padded = "$" + token + "$";
+        List<String> result = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private static Set<String> tokensOf(Book book) {
+        Set<String> tokens = new HashSet<>(BookSearchIndex.tokenize(book.getTitle()));
+        tokens.addAll(BookSearchIndex.tokenize(book.getAuthor()));
+        return tokens;
+    }
+}
@@ -0,0 +1,302 @@
+package com.lld.practice.questions;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seeded load generator that replays library-like traffic against a LibrarySystem.
+ *
+ * - titles are picked with Zipf-distributed popularity
+ * - each thread opens with a borrow-heavy "semester start" phase, then settles into the steady mix
+ * - Student and Faculty patrons borrow and return at their home branch and search everywhere
+ *
+ * Every thread draws from its own random stream derived from the seed, so the operations each
+ * thread issues are reproducible (their interleaving is up to the scheduler). At the end the
+ * simulator checks that every branch's available count equals stock minus active loans.
+ *
+ * Run: mvn exec:java -Dexec.mainClass="com.lld.practice.questions.WorkloadSimulator" -Dexec.args="8 200000"
+ */
+public class WorkloadSimulator implements AutoCloseable {
+
+    public static void main(String[] args) throws InterruptedException {
+        Config config = new Config();
+        if (args.length > 0) config.threads(Integer.parseInt(args[0]));
+        if (args.length > 1) config.operationsPerThread(Integer.parseInt(args[1]));
+        if (args.length > 2) config.seed(Long.parseLong(args[2]));
+
+        Report report;
+        try (WorkloadSimulator simulator = new WorkloadSimulator(config)) {
+            report = simulator.run();
+        }
+        System.out.println(report);
+        if (!report.isConsistent()) System.exit(1);
+    }
+
+    // Operation mix weights; they need not add up to anything in particular
+    static final class Mix {
+        final int borrow;
+        final int returns;
+        final int localSearch;
+        final int crossBranchSearch;
+
+        Mix(int borrow, int returns, int localSearch, int crossBranchSearch) {
+            this.borrow = borrow;
+            this.returns = returns;
+            this.localSearch = localSearch;
+            this.crossBranchSearch = crossBranchSearch;
+        }
+
+        static final Mix STEADY = new Mix(20, 20, 50, 10);
+        static final Mix SEARCH_HEAVY = new Mix(5, 5, 75, 15);
+        static final Mix SEMESTER_START = new Mix(70, 5, 20, 5);
+    }
+
+    static final class Config {
+        long seed = 42;
+        int threads = 4;
+        int operationsPerThread = 50_000;
+        int branches = 4;
+        int titles = 5_000;
+        int copiesPerTitle = 3;
+        int students = 2_000;
+        int faculty = 200;
+        double zipfExponent = 1.1;
+        double semesterStartFraction = 0.2; // share of each thread's operations in the spike phase
+        Mix steadyMix = Mix.STEADY;
+
+        Config seed(long seed) { this.seed = seed; return this; }
+        Config threads(int threads) { this.threads = threads; return this; }
+        Config operationsPerThread(int count) { this.operationsPerThread = count; return this; }
+        Config branches(int branches) { this.branches = branches; return this; }
+        Config titles(int titles) { this.titles = titles; return this; }
+        Config copiesPerTitle(int copies) { this.copiesPerTitle = copies; return this; }
+        Config users(int students, int faculty) { this.students = students; this.faculty = faculty; return this; }
+        Config zipfExponent(double exponent) { this.zipfExponent = exponent; return this; }
+        Config semesterStartFraction(double fraction) { this.semesterStartFraction = fraction; return this; }
+        Config steadyMix(Mix mix) { this.steadyMix = mix; return this; }
+    }
+
+    private enum Operation { BORROW, RETURN, LOCAL_SEARCH, CROSS_BRANCH_SEARCH }
+
+    private final Config config;
+    private final LibrarySystem system;
+    private final List<Library> branches;
+    private final List<User> users;
+    private final List<Book> catalog;
+    private final double[] popularityCdf;
+    private final EventPipeline events; // shared by every branch, no sinks
+
+    public WorkloadSimulator(Config config) {
+        this.config = config;
+        this.system = new LibrarySystem();
+        this.branches = new ArrayList<>(config.branches);
+        this.users = new ArrayList<>(config.students + config.faculty);
+        this.catalog = new ArrayList<>(config.titles);
+        this.popularityCdf = zipfCdf(config.titles, config.zipfExponent);
+
+        SplittableRandom random = new SplittableRandom(config.seed);
+        for (int i = 0; i < config.titles; i++) {
+            catalog.add(new Book(String.format("979%010d", i), "Title " + i + " " + subject(random),
+                    "Author " + random.nextInt(config.titles / 4 + 1), List.of(subject(random))));
+        }
+        this.events = new EventPipeline(List.of());
+        for (int b = 0; b < config.branches; b++) {
+            Library branch = new Library("Branch " + b, b + " Campus Road");
+            branch.setEventPipeline(events);
+            for (Book book : catalog) {
+                branch.addBook(book, config.copiesPerTitle);
+            }
+            branches.add(branch);
+            system.addLibrary(branch);
+        }
+        for (int i = 0; i < config.students; i++) {
+            users.add(new Student("S" + i, "Student " + i, "s" + i + "@example.edu"));
+        }
+        for (int i = 0; i < config.faculty; i++) {
+            users.add(new Faculty("F" + i, "Faculty " + i, "f" + i + "@example.edu"));
+        }
+        users.forEach(system::addUser);
+    }
+
+    public Report run() throws InterruptedException {
+        LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        AtomicLong successes = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>(config.threads);
+        for (int t = 0; t < config.threads; t++) {
+            SplittableRandom random = new SplittableRandom(config.seed * 31 + t);
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                successes.addAndGet(drive(random, latencies));
+            }, "workload-" + t));
+        }
+
+        workers.forEach(Thread::start);
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        return new Report(config, latencies, successes.get(), elapsed, verifyInventory());
+    }
+
+    // Stops the event consumer thread
+    @Override
+    public void close() {
+        events.close();
+    }
+
+    // Issues this thread's operations and returns how many borrows and returns succeeded
+    private long drive(SplittableRandom random, LatencyHistogram[] latencies) {
+        int spikeOperations = (int) (config.operationsPerThread * config.semesterStartFraction);
+        long succeeded = 0;
+        for (int i = 0; i < config.operationsPerThread; i++) {
+            Mix mix = i < spikeOperations ? Mix.SEMESTER_START : config.steadyMix;
+            Operation operation = pick(mix, random);
+            User user = users.get(random.nextInt(users.size()));
+            Library home = branches.get(Math.floorMod(user.getUserId().hashCode(), branches.size()));
+            Book book = catalog.get(popularTitle(random));
+
+            long started = System.nanoTime();
+            switch (operation) {
+                case BORROW -> {
+                    if (home.tryBorrow(book.getIsbn(), user).isSuccess()) succeeded++;
+                }
+                case RETURN -> {
+                    BorrowRecord loan = anyLoan(user, random);
+                    if (loan != null && home.tryReturn(loan.getBook().getIsbn(), user).isSuccess()) succeeded++;
+                }
+                case LOCAL_SEARCH -> home.searchBooks(book.getTitle().split(" ")[2]);
+                case CROSS_BRANCH_SEARCH -> system.searchBooksAcrossLibraries(book.getAuthor());
+            }
+            latencies[operation.ordinal()].record(System.nanoTime() - started);
+        }
+        return succeeded;
+    }
+
+    private static BorrowRecord anyLoan(User user, SplittableRandom random) {
+        List<BorrowRecord> loans = user.getBorrowedBooks();
+        return loans.isEmpty() ? null : loans.get(random.nextInt(loans.size()));
+    }
+
+    private static Operation pick(Mix mix, SplittableRandom random) {
+        int roll = random.nextInt(mix.borrow + mix.returns + mix.localSearch + mix.crossBranchSearch);
+        if ((roll -= mix.borrow) < 0) return Operation.BORROW;
+        if ((roll -= mix.returns) < 0) return Operation.RETURN;
+        if (roll - mix.localSearch < 0) return Operation.LOCAL_SEARCH;
+        return Operation.CROSS_BRANCH_SEARCH;
+    }
+
+    private int popularTitle(SplittableRandom random) {
+        int index = Arrays.binarySearch(popularityCdf, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, popularityCdf.length - 1);
+    }
+
+    // Cumulative Zipf probabilities: rank r has weight 1 / r^exponent
+    static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            total += 1.0 / Math.pow(rank, exponent);
+            cdf[rank - 1] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    private static String subject(SplittableRandom random) {
+        String[] subjects = {"Algebra", "Biology", "Chemistry", "Databases", "Economics", "Physics", "Poetry", "Statistics"};
+        return subjects[random.nextInt(subjects.length)];
+    }
+
+    // Available copies must equal stock minus active loans, for every title in every branch
+    private List<String> verifyInventory() {
+        List<String> violations = new ArrayList<>();
+        for (Library branch : branches) {
+            Map<String, Integer> onLoan = new HashMap<>();
+            for (BorrowRecord loan : branch.getActiveLoans()) {
+                onLoan.merge(loan.getBook().getIsbn(), 1, Integer::sum);
+            }
+            for (Book book : catalog) {
+                int expected = config.copiesPerTitle - onLoan.getOrDefault(book.getIsbn(), 0);
+                int actual = branch.getAvailableCopies(book.getIsbn());
+                if (actual != expected) {
+                    violations.add(branch.getName() + " " + book.getIsbn() + ": available " + actual
+                            + ", expected " + expected);
+                }
+            }
+        }
+        return violations;
+    }
+
+    static final class Report {
+        private final Config config;
+        private final LatencyHistogram[] latencies;
+        private final long successfulLoanOperations;
+        private final long elapsedNanos;
+        private final List<String> violations;
+
+        Report(Config config, LatencyHistogram[] latencies, long successfulLoanOperations, long elapsedNanos,
+               List<String> violations) {
+            this.config = config;
+            this.latencies = latencies;
+            this.successfulLoanOperations = successfulLoanOperations;
+            this.elapsedNanos = elapsedNanos;
+            this.violations = violations;
+        }
+
+        public long getTotalOperations() {
+            return (long) config.threads * config.operationsPerThread;
+        }
+
+        public double getThroughputPerSecond() {
+            return getTotalOperations() / (elapsedNanos / 1e9);
+        }
+
+        public long getSuccessfulLoanOperations() {
+            return successfulLoanOperations;
+        }
+
+        public List<String> getViolations() {
+            return violations;
+        }
+
+        public boolean isConsistent() {
+            return violations.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("Seed %d, %d threads x %,d operations, %d branches, %,d titles%n",
+                    config.seed, config.threads, config.operationsPerThread, config.branches, config.titles));
+            out.append(String.format("Throughput: %,.0f ops/s (%,d successful borrows/returns)%n",
+                    getThroughputPerSecond(), successfulLoanOperations));
+            out.append(String.format("%-20s %10s %10s %10s %10s %12s%n", "operation", "count", "p50 us", "p99 us",
+                    "p99.9 us", "max us"));
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram histogram = latencies[operation.ordinal()];
+                out.append(String.format("%-20s %10d %10.1f %10.1f %10.1f %12.1f%n", operation, histogram.getCount(),
+                        histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3,
+                        histogram.getValueAtPercentile(99.9) / 1e3, histogram.getMaxNanos() / 1e3));
+            }
+            out.append(violations.isEmpty()
+                    ? "Inventory check: OK (available == stock - active loans)"
+                    : "Inventory check: FAILED, " + violations.size() + " mismatches, first: " + violations.get(0));
+            return out.toString();
+        }
+    }
+}
@@ -1,13 +1,30 @@
 package com.lld.practice.questions;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
 import static org.assertj.core.api.Assertions.*;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.ObjectName;
 
 /**
  * Unit tests for Library Management System
@@ -18,10 +35,13 @@ class LibraryManagementSystemTest {
     private Book book1, book2, book3;
     private Student student;
     private Faculty faculty;
+    private EventPipeline quietEvents; // library events are delivered but printed nowhere
     
     @BeforeEach
     void setUp() {
         library = new Library("Test Library", "123 Test St");
+        quietEvents = new EventPipeline(List.of());
+        library.setEventPipeline(quietEvents);
         
         book1 = new Book("978-0134685991", "Effective Java", "Joshua Bloch", 
                         Arrays.asList("Programming", "Java"));
@@ -34,6 +54,11 @@ class LibraryManagementSystemTest {
         faculty = new Faculty("F001", "Dr. Bob Smith", "bob@university.edu");
     }
     
+    @AfterEach
+    void tearDown() {
+        quietEvents.close();
+    }
+    
     @Test
     @DisplayName("Should add books to library successfully")
     void testAddBooks() {
@@ -254,4 +279,1193 @@ class LibraryManagementSystemTest {
         assertThat(retrievedUser).isNotNull();
         assertThat(retrievedUser.getName()).isEqualTo("Alice Johnson");
     }
-} 
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Token search should match whole words and substring mode should keep legacy results")
+    void testSearchModes() {
+        library.addBook(book1, 1);
+        library.addBook(book2, 1);
+        library.addBook(book3, 1);
+        
+        // Multi-word queries match books containing every token, case-insensitively
+        assertThat(library.searchBooks("effective JAVA")).containsExactly(book1);
+        assertThat(library.searchBooks("best practices")).containsExactly(book3);
+        
+        // Partial words only match in substring mode
+        assertThat(library.searchBooks("Jav")).isEmpty();
+        assertThat(library.searchBooks("Jav", SearchMode.SUBSTRING)).containsExactly(book1);
+        assertThat(library.searchBooks("gram", SearchMode.SUBSTRING)).hasSize(3);
+    }
+    
+    @Test
+    @DisplayName("Re-adding a book with the same ISBN should reindex its new fields")
+    void testSearchIndexReplacesBook() {
+        library.addBook(book1, 1);
+        Book renamed = new Book(book1.getIsbn(), "Effective Kotlin", "Joshua Bloch", Arrays.asList("Programming"));
+        library.addBook(renamed, 1);
+        
+        assertThat(library.searchBooks("Java")).isEmpty();
+        assertThat(library.searchBooks("Kotlin")).hasSize(1);
+    }
+    
+    @Test
+    @DisplayName("Autocomplete should rank titles and authors by book count and follow catalog changes")
+    void testAutocomplete() {
+        library.addBook(book1, 1);
+        library.addBook(book2, 1);
+        library.addBook(book3, 1);
+        library.addBook(new Book("isbn-1", "Refactoring", "Robert Martin", Arrays.asList("Programming")), 1);
+        
+        assertThat(library.autocomplete("rob", 5)).containsExactly("Robert Martin");
+        assertThat(library.autocomplete("", 2)).containsExactly("Robert Martin", "Clean Code");
+        assertThat(library.autocomplete("e", 5)).containsExactly("Effective Java");
+        assertThat(library.autocomplete("x", 5)).isEmpty();
+        
+        // Replacing a book drops its old title from the suggestions
+        library.addBook(new Book(book1.getIsbn(), "Java Puzzlers", "Joshua Bloch", Arrays.asList("Java")), 1);
+        assertThat(library.autocomplete("e", 5)).isEmpty();
+        assertThat(library.autocomplete("jav", 5)).containsExactly("Java Puzzlers");
+        
+        LibrarySystem librarySystem = new LibrarySystem();
+        Library other = new Library("Other", "Address");
+        other.addBook(new Book("isbn-2", "Agile Software Development", "Robert Martin", Arrays.asList("Agile")), 1);
+        librarySystem.addLibrary(library);
+        librarySystem.addLibrary(other);
+        assertThat(librarySystem.autocomplete("r", 2)).containsExactly("Robert Martin", "Refactoring");
+        
+        // Edges hold runs of characters: prefixes may end inside one, and shared runs split cleanly
+        library.addBook(new Book("isbn-3", "Java Concurrency in Practice", "Brian Goetz", Arrays.asList("Java")), 1);
+        assertThat(library.autocomplete("java p", 5)).containsExactly("Java Puzzlers");
+        assertThat(library.autocomplete("JAVA", 5)).containsExactly("Java Concurrency in Practice", "Java Puzzlers");
+        assertThat(library.autocomplete("java concurrency in practice!", 5)).isEmpty();
+        library.addBook(new Book("isbn-3", "Concurrency", "Brian Goetz", Arrays.asList("Java")), 1);
+        assertThat(library.autocomplete("java", 5)).containsExactly("Java Puzzlers");
+        
+        // The limit is capped at the size of each node's cache
+        library.addBook(new Book("isbn-4", "The Pragmatic Programmer", "Andrew Hunt", Arrays.asList("Programming")), 1);
+        assertThat(library.autocomplete("", 50)).hasSize(AutocompleteTrie.MAX_SUGGESTIONS);
+    }
+    
+    @Test
+    @DisplayName("Cross-branch autocomplete should rank by book counts summed over every branch")
+    void testAutocompleteAcrossBranches() {
+        LibrarySystem system = new LibrarySystem();
+        List<Library> branches = new ArrayList<>();
+        for (int b = 0; b < 3; b++) {
+            Library branch = new Library("Branch " + b, "Address");
+            system.addLibrary(branch);
+            branches.add(branch);
+        }
+        // Each branch has ten titles on two books each, so its own list is full of them ...
+        int isbn = 0;
+        for (int b = 0; b < 3; b++) {
+            for (int t = 0; t < AutocompleteTrie.MAX_SUGGESTIONS; t++) {
+                for (int copy = 0; copy < 2; copy++) {
+                    branches.get(b).addBook(new Book("isbn-" + isbn++, "Zeta " + b + "-" + t, "Anon", List.of()), 1);
+                }
+            }
+        }
+        // ... while the title they share is on one book per branch and in none of those lists
+        for (Library branch : branches) {
+            branch.addBook(new Book("isbn-" + isbn++, "Zeta Shared", "Anon", List.of()), 1);
+        }
+        assertThat(branches.get(0).autocomplete("zeta", 10)).doesNotContain("Zeta Shared");
+        assertThat(system.autocomplete("zeta", 1)).containsExactly("Zeta Shared");
+        
+        // A completion in one branch's list gets its full total from the others
+        Library small = new Library("Small", "Address");
+        system.addLibrary(small);
+        small.addBook(new Book("isbn-" + isbn++, "Zeta 0-0", "Anon", List.of()), 1);
+        small.addBook(new Book("isbn-" + isbn++, "Zeta 0-0", "Anon", List.of()), 1);
+        assertThat(system.autocomplete("zeta", 2)).containsExactly("Zeta 0-0", "Zeta Shared");
+    }
+    
+    @Test
+    @DisplayName("Fuzzy search should tolerate typos in titles and authors")
+    void testFuzzySearch() {
+        library.addBook(book1, 1);
+        library.addBook(book2, 1);
+        library.addBook(book3, 1);
+        
+        assertThat(library.searchBooks("Blosh")).isEmpty();
+        assertThat(library.searchBooks("Blosh", SearchMode.FUZZY)).containsExactly(book1);
+        assertThat(library.searchBooks("Matrin", SearchMode.FUZZY)).containsExactly(book3);
+        assertThat(library.searchBooks("robert martn", SearchMode.FUZZY)).containsExactly(book3);
+        
+        // Exact matches rank ahead of misspelled ones
+        Book codeComplete = new Book("isbn-1", "Code Complete", "Steve McConnell", Arrays.asList("Programming"));
+        Book coderBook = new Book("isbn-2", "The Coder", "Someone", Arrays.asList("Programming"));
+        library.addBook(codeComplete, 1);
+        library.addBook(coderBook, 1);
+        assertThat(library.searchBooks("code", SearchMode.FUZZY)).containsExactly(book3, codeComplete, coderBook);
+        
+        // Categories are not part of the fuzzy index and far-off words do not match
+        assertThat(library.searchBooks("Programing", SearchMode.FUZZY)).isEmpty();
+        assertThat(library.searchBooks("Xyzzy", SearchMode.FUZZY)).isEmpty();
+    }
+    
+    @Test
+    @DisplayName("Bounded edit distance should stop at the bound")
+    void testBoundedEditDistance() {
+        assertThat(TrigramIndex.boundedEditDistance("bloch", "blosh", 2)).isEqualTo(1);
+        assertThat(TrigramIndex.boundedEditDistance("martin", "matrin", 2)).isEqualTo(2);
+        assertThat(TrigramIndex.boundedEditDistance("kitten", "sitting", 2)).isEqualTo(3);
+        assertThat(TrigramIndex.boundedEditDistance("java", "javascript", 2)).isEqualTo(3);
+    }
+    
+    @Test
+    @DisplayName("Borrowing unrelated ISBNs should not serialize and should keep inventory consistent")
+    void testContentionAcrossIsbns() throws InterruptedException {
+        int threads = 8;
+        int booksPerThread = 4;
+        int iterations = 200;
+        for (int i = 0; i < threads * booksPerThread; i++) {
+            library.addBook(new Book("isbn-" + i, "Book " + i, "Author " + i, Arrays.asList("Category")), 1);
+        }
+        
+        // Park a borrow of isbn-0 inside its stripe: it holds the stripe and waits for the user's monitor
+        Student parked = new Student("P0", "Parked", "parked@email.com");
+        int parkedStripe = Library.stripeOf("isbn-0");
+        Thread stuck;
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        synchronized (parked) {
+            stuck = new Thread(() -> library.borrowBook("isbn-0", parked));
+            stuck.start();
+            while (stuck.getState() != Thread.State.BLOCKED) {
+                Thread.onSpinWait();
+            }
+            
+            // Workers on other stripes must finish while that stripe stays held
+            for (int t = 0; t < threads; t++) {
+                int first = t * booksPerThread;
+                Student worker = new Student("W" + t, "Worker " + t, "worker" + t + "@email.com");
+                workers.add(new Thread(() -> {
+                    for (int n = 0; n < iterations; n++) {
+                        String isbn = "isbn-" + (first + n % booksPerThread);
+                        if (Library.stripeOf(isbn) == parkedStripe) continue;
+                        if (!library.borrowBook(isbn, worker) || !library.returnBook(isbn, worker)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            workers.forEach(Thread::start);
+            for (Thread worker : workers) {
+                worker.join(10_000);
+                assertThat(worker.isAlive()).as("worker blocked behind an unrelated stripe").isFalse();
+            }
+            assertThat(stuck.getState()).isEqualTo(Thread.State.BLOCKED);
+        }
+        stuck.join();
+        
+        // No lost updates: every copy came back, and the parked borrow went through once released
+        assertThat(failures.get()).isZero();
+        assertThat(library.getAvailableCopies("isbn-0")).isZero();
+        for (int i = 1; i < threads * booksPerThread; i++) {
+            assertThat(library.getAvailableCopies("isbn-" + i)).isEqualTo(1);
+        }
+    }
+    
+    @Test
+    @DisplayName("Concurrent borrows of different ISBNs should respect the per-user limit")
+    void testConcurrentBorrowLimit() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            library.addBook(new Book("isbn-" + i, "Book " + i, "Author " + i, Arrays.asList("Category")), 1);
+        }
+        
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String isbn = "isbn-" + i;
+            threads.add(new Thread(() -> library.borrowBook(isbn, student)));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertThat(student.getBorrowedBooks()).hasSize(5);
+        long unavailable = java.util.stream.IntStream.range(0, 20)
+                .filter(i -> !library.isBookAvailable("isbn-" + i))
+                .count();
+        assertThat(unavailable).isEqualTo(5);
+    }
+    
+    @Test
+    @DisplayName("Inventory counters should never go negative under concurrent borrowing")
+    void testAtomicInventory() throws InterruptedException {
+        library.addBook(book1, 3);
+        
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger successes = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            Student borrower = new Student("S1" + i, "Student " + i, "s" + i + "@email.com");
+            threads.add(new Thread(() -> {
+                if (library.borrowBook(book1.getIsbn(), borrower)) successes.incrementAndGet();
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        assertThat(successes.get()).isEqualTo(3);
+        assertThat(library.getAvailableCopies(book1.getIsbn())).isZero();
+        
+        // Restocking adds to the existing counter
+        library.addBook(book1, 2);
+        assertThat(library.getAvailableCopies(book1.getIsbn())).isEqualTo(2);
+        assertThat(library.getAvailableCopies("invalid-isbn")).isZero();
+    }
+    
+    @Test
+    @DisplayName("Returning should close the user's oldest loan of that ISBN and keep other loans")
+    void testReturnUsesLoanIndex() {
+        library.addBook(book1, 3);
+        library.addBook(book2, 1);
+        Student other = new Student("S002", "Bob", "bob@email.com");
+        
+        library.borrowBook(book1.getIsbn(), student);
+        library.borrowBook(book2.getIsbn(), student);
+        library.borrowBook(book1.getIsbn(), other);
+        library.borrowBook(book1.getIsbn(), student);
+        BorrowRecord oldest = student.getBorrowedBooks().get(0);
+        
+        assertThat(library.returnBook(book1.getIsbn(), student)).isTrue();
+        assertThat(oldest.getReturnDate()).isNotNull();
+        assertThat(student.getBorrowedBooks()).extracting(record -> record.getBook().getIsbn())
+                .containsExactly(book2.getIsbn(), book1.getIsbn());
+        assertThat(other.getBorrowedBooks()).hasSize(1);
+        
+        assertThat(library.returnBook(book1.getIsbn(), student)).isTrue();
+        assertThat(library.returnBook(book1.getIsbn(), student)).isFalse();
+        assertThat(library.getAvailableCopies(book1.getIsbn())).isEqualTo(2);
+    }
+    
+    @Test
+    @DisplayName("Batch borrow and return should report a result per request")
+    void testBatchBorrowAndReturn() {
+        library.addBook(book1, 1);
+        library.addBook(book2, 2);
+        library.getMetrics().setTimingSampleInterval(1); // time every request
+        
+        InMemoryEventSink sink = EventSinks.inMemory();
+        try (EventPipeline pipeline = new EventPipeline(List.of(sink))) {
+            library.setEventPipeline(pipeline);
+            
+            List<LoanResult> borrowed = library.borrowBooks(Arrays.asList(
+                    new LoanRequest(book1.getIsbn(), student),
+                    new LoanRequest(book1.getIsbn(), faculty),
+                    new LoanRequest(book2.getIsbn(), faculty),
+                    new LoanRequest("invalid-isbn", student)));
+            assertThat(borrowed).extracting(LoanResult::getOutcome).containsExactly(
+                    LoanOutcome.SUCCESS, LoanOutcome.NOT_AVAILABLE, LoanOutcome.SUCCESS, LoanOutcome.BOOK_NOT_FOUND);
+            assertThat(student.getBorrowedBooks()).hasSize(1);
+            assertThat(faculty.getBorrowedBooks()).hasSize(1);
+            
+            library.restoreLoan(book2.getIsbn(), student, LocalDate.now().minusDays(24)); // 10 days overdue
+            List<LoanResult> returned = library.returnBooks(Arrays.asList(
+                    new LoanRequest(book1.getIsbn(), student),
+                    new LoanRequest(book1.getIsbn(), student),
+                    new LoanRequest(book2.getIsbn(), faculty),
+                    new LoanRequest(book2.getIsbn(), student),
+                    new LoanRequest("invalid-isbn", student)));
+            assertThat(returned).extracting(LoanResult::getOutcome).containsExactly(LoanOutcome.SUCCESS,
+                    LoanOutcome.NO_ACTIVE_LOAN, LoanOutcome.SUCCESS, LoanOutcome.SUCCESS, LoanOutcome.BOOK_NOT_FOUND);
+            assertThat(returned.get(3).getFine()).isEqualTo(5.0);
+            assertThat(library.getAvailableCopies(book1.getIsbn())).isEqualTo(1);
+            assertThat(library.getAvailableCopies(book2.getIsbn())).isEqualTo(3);
+            
+            // Batches publish and time every request like the single-item calls do
+            pipeline.flush();
+            assertThat(sink.getEvents()).extracting(LibraryEvent::getType).containsExactly(
+                    EventType.BORROW, EventType.REJECTION, EventType.BORROW, EventType.REJECTION,
+                    EventType.RETURN, EventType.REJECTION, EventType.RETURN, EventType.FINE, EventType.RETURN,
+                    EventType.REJECTION);
+            assertThat(library.getMetrics().getLatency(LibraryMetrics.Operation.RETURN).getCount()).isEqualTo(5);
+            assertThat(library.getMetrics().getOutcomeCount(LibraryMetrics.Operation.BORROW, LoanOutcome.SUCCESS))
+                    .isEqualTo(2);
+        }
+    }
+    
+    @Test
+    @DisplayName("Batch borrowing should enforce the per-user limit within the batch")
+    void testBatchBorrowLimit() {
+        List<LoanRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            library.addBook(new Book("isbn-" + i, "Book " + i, "Author " + i, Arrays.asList("Category")), 1);
+            requests.add(new LoanRequest("isbn-" + i, student));
+        }
+        
+        List<LoanResult> results = library.borrowBooks(requests);
+        assertThat(results).filteredOn(LoanResult::isSuccess).hasSize(5);
+        assertThat(results.get(5).getOutcome()).isEqualTo(LoanOutcome.LIMIT_REACHED);
+    }
+    
+    @Test
+    @DisplayName("Due-date index should answer overdue and due-soon queries")
+    void testDueDateQueries() {
+        library.addBook(book1, 2);
+        library.addBook(book2, 1);
+        library.borrowBook(book1.getIsbn(), student);  // due in 14 days
+        library.borrowBook(book2.getIsbn(), faculty);  // due in 30 days
+        
+        LocalDate today = LocalDate.now();
+        assertThat(library.getOverdueLoans(today)).isEmpty();
+        assertThat(library.getOverdueLoans(today.plusDays(15))).extracting(BorrowRecord::getUser).containsExactly(student);
+        assertThat(library.getOverdueLoans(today.plusDays(31))).extracting(BorrowRecord::getUser).containsExactly(student, faculty);
+        
+        assertThat(library.getLoansDueWithin(13)).isEmpty();
+        assertThat(library.getLoansDueWithin(14)).hasSize(1);
+        assertThat(library.getLoansDueWithin(30)).hasSize(2);
+        
+        // Returned loans leave the index
+        library.returnBook(book1.getIsbn(), student);
+        assertThat(library.getOverdueLoans(today.plusDays(31))).extracting(BorrowRecord::getUser).containsExactly(faculty);
+    }
+    
+    @Test
+    @DisplayName("Due-date index should order loans by due date")
+    void testDueDateIndexOrdering() {
+        DueDateIndex index = new DueDateIndex();
+        LocalDate today = LocalDate.now();
+        BorrowRecord longOverdue = new BorrowRecord(book1, student, today.minusDays(40));
+        BorrowRecord justOverdue = new BorrowRecord(book2, student, today.minusDays(15));
+        BorrowRecord notDue = new BorrowRecord(book3, student, today);
+        index.add(notDue);
+        index.add(justOverdue);
+        index.add(longOverdue);
+        
+        assertThat(index.overdueAsOf(today)).containsExactly(longOverdue, justOverdue);
+        assertThat(index.dueBetween(today, today.plusDays(14))).containsExactly(notDue);
+        
+        index.remove(longOverdue);
+        assertThat(index.overdueAsOf(today)).containsExactly(justOverdue);
+    }
+    
+    @Test
+    @DisplayName("Bulk fine engine should match per-user fine rules exactly")
+    void testFineEngineMatchesUserRules() {
+        LocalDate today = LocalDate.now();
+        List<BorrowRecord> records = new ArrayList<>();
+        for (int days = 0; days <= 60; days++) {
+            records.add(new BorrowRecord(book1, student, today.minusDays(days)));
+            records.add(new BorrowRecord(book2, faculty, today.minusDays(days)));
+        }
+        BorrowRecord returned = new BorrowRecord(book3, student, today.minusDays(30));
+        returned.markReturned();
+        records.add(returned);
+        
+        FineEngine engine = FineEngine.of(records);
+        double[] sequential = engine.computeFines(today);
+        double[] parallel = engine.computeFines(today, true);
+        
+        double expectedTotal = 0.0;
+        for (int i = 0; i < records.size(); i++) {
+            BorrowRecord record = records.get(i);
+            double expected = record.getUser().calculateFine(record);
+            assertThat(sequential[i]).isEqualTo(expected);
+            assertThat(parallel[i]).isEqualTo(expected);
+            expectedTotal += expected;
+        }
+        assertThat(engine.totalFines(today)).isEqualTo(expectedTotal);
+        
+        // Active loans keep accruing as the check date moves, returned ones do not
+        double[] later = engine.computeFines(today.plusDays(1));
+        assertThat(later[records.size() - 1]).isEqualTo(sequential[records.size() - 1]);
+        assertThat(later[0]).isEqualTo(0.0);
+        assertThat(later[2 * 14]).isEqualTo(0.50);
+    }
+    
+    @Test
+    @DisplayName("Fine engine should run over a library's active loans")
+    void testFineEngineOverActiveLoans() {
+        library.addBook(book1, 1);
+        library.addBook(book2, 1);
+        library.borrowBook(book1.getIsbn(), student);
+        library.borrowBook(book2.getIsbn(), faculty);
+        
+        FineEngine engine = FineEngine.of(library.getActiveLoans());
+        assertThat(engine.size()).isEqualTo(2);
+        assertThat(engine.totalFines(LocalDate.now())).isEqualTo(0.0);
+        // Student overdue 6 days, faculty not yet due
+        assertThat(engine.totalFines(LocalDate.now().plusDays(20))).isEqualTo(3.00);
+    }
+    
+    @Test
+    @DisplayName("Journal replay should restore books, inventory and active loans")
+    void testJournalRecovery(@TempDir Path dir) {
+        Path journalPath = dir.resolve("central.journal");
+        LibrarySystem system = new LibrarySystem();
+        system.addUser(student);
+        system.addUser(faculty);
+        
+        Library journaled = system.openLibrary("Central", "123 Main St", journalPath);
+        journaled.addBook(book1, 2);
+        journaled.addBook(book2, 1);
+        journaled.borrowBook(book1.getIsbn(), student);
+        journaled.borrowBook(book2.getIsbn(), faculty);
+        journaled.returnBook(book2.getIsbn(), faculty);
+        journaled.borrowBooks(Arrays.asList(new LoanRequest(book1.getIsbn(), faculty)));
+        journaled.closeJournal();
+        
+        // Simulate a restart with fresh user objects
+        LibrarySystem restarted = new LibrarySystem();
+        Student restartedStudent = new Student("S001", "Alice Johnson", "alice@email.com");
+        Faculty restartedFaculty = new Faculty("F001", "Dr. Bob Smith", "bob@university.edu");
+        restarted.addUser(restartedStudent);
+        restarted.addUser(restartedFaculty);
+        Library recovered = restarted.openLibrary("Central", "123 Main St", journalPath);
+        
+        assertThat(recovered.getAvailableCopies(book1.getIsbn())).isZero();
+        assertThat(recovered.getAvailableCopies(book2.getIsbn())).isEqualTo(1);
+        assertThat(recovered.searchBooks("Effective Java")).hasSize(1);
+        assertThat(restartedStudent.getBorrowedBooks()).extracting(record -> record.getBook().getIsbn())
+                .containsExactly(book1.getIsbn());
+        assertThat(restartedFaculty.getBorrowedBooks()).hasSize(1);
+        
+        // The recovered library keeps journaling
+        assertThat(recovered.returnBook(book1.getIsbn(), restartedStudent)).isTrue();
+        recovered.closeJournal();
+        Library again = Library.recover("Central", "123 Main St", journalPath, restarted::getUser);
+        assertThat(again.getAvailableCopies(book1.getIsbn())).isEqualTo(1);
+        again.closeJournal();
+    }
+    
+    @Test
+    @DisplayName("Journal replay should not depend on the order branches are reopened in")
+    void testJournalReplayIgnoresLoanLimit(@TempDir Path dir) {
+        Path pathA = dir.resolve("a.journal");
+        Path pathB = dir.resolve("b.journal");
+        LibrarySystem system = new LibrarySystem();
+        system.addUser(student);
+        Library branchA = system.openLibrary("A", "1 First St", pathA);
+        Library branchB = system.openLibrary("B", "2 Second St", pathB);
+        for (int i = 0; i < 6; i++) {
+            Book book = new Book(String.format("978000000%04d", i), "Title " + i, "Author", List.of("Category"));
+            branchA.addBook(book, 1);
+            branchB.addBook(book, 1);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertThat(branchA.borrowBook(String.format("978000000%04d", i), student)).isTrue();
+        }
+        assertThat(branchA.returnBook("9780000000004", student)).isTrue();
+        assertThat(branchB.borrowBook("9780000000005", student)).isTrue();
+        branchA.closeJournal();
+        branchB.closeJournal();
+        
+        // Reopening B first puts the student at the limit before A's five borrows replay
+        LibrarySystem restarted = new LibrarySystem();
+        Student restartedStudent = new Student("S001", "Alice Johnson", "alice@email.com");
+        restarted.addUser(restartedStudent);
+        restarted.openLibrary("B", "2 Second St", pathB).closeJournal();
+        Library recoveredA = restarted.openLibrary("A", "1 First St", pathA);
+        recoveredA.closeJournal();
+        
+        assertThat(recoveredA.getAvailableCopies("9780000000004")).isEqualTo(1);
+        assertThat(recoveredA.getActiveLoans()).hasSize(4);
+        assertThat(restartedStudent.getBorrowedBooks()).hasSize(5);
+    }
+    
+    @Test
+    @DisplayName("Journal replay should stop at a torn tail and keep appending after it")
+    void testJournalTornTail(@TempDir Path dir) throws IOException {
+        Path journalPath = dir.resolve("branch.journal");
+        Library journaled = Library.recover("Branch", "Address", journalPath, id -> null);
+        journaled.addBook(book1, 1);
+        journaled.addBook(book2, 1);
+        journaled.closeJournal();
+        
+        long intactLength = Files.size(journalPath);
+        Files.write(journalPath, new byte[] {0, 0, 0, 40, 2, 0, 0}, StandardOpenOption.APPEND);
+        
+        Library recovered = Library.recover("Branch", "Address", journalPath, id -> null);
+        assertThat(Files.size(journalPath)).isEqualTo(intactLength);
+        assertThat(recovered.isBookAvailable(book2.getIsbn())).isTrue();
+        recovered.addBook(book3, 1);
+        recovered.closeJournal();
+        
+        Library again = Library.recover("Branch", "Address", journalPath, id -> null);
+        assertThat(again.searchBooks("Programming")).hasSize(3);
+        again.closeJournal();
+    }
+    
+    @Test
+    @DisplayName("Snapshots should round-trip books, inventory and active loans")
+    void testSnapshotRoundTrip(@TempDir Path dir) {
+        LibrarySystem system = new LibrarySystem();
+        system.addUser(student);
+        system.addUser(faculty);
+        Library central = new Library("Central", "123 Main St");
+        Library branch = new Library("Branch", "456 Side St");
+        system.addLibrary(central);
+        system.addLibrary(branch);
+        
+        central.addBook(book1, 3);
+        central.addBook(book2, 1);
+        branch.addBook(book3, 2);
+        central.borrowBook(book1.getIsbn(), student);
+        central.borrowBook(book2.getIsbn(), faculty);
+        branch.borrowBook(book3.getIsbn(), student);
+        
+        Path snapshot = dir.resolve("system.snapshot");
+        system.exportSnapshot(snapshot);
+        
+        LibrarySystem restored = new LibrarySystem();
+        Student restoredStudent = new Student("S001", "Alice Johnson", "alice@email.com");
+        restored.addUser(restoredStudent);
+        restored.addUser(new Faculty("F001", "Dr. Bob Smith", "bob@university.edu"));
+        assertThat(restored.importSnapshot(snapshot)).hasSize(2);
+        
+        Library restoredCentral = restored.getLibrary("Central");
+        assertThat(restoredCentral.getAddress()).isEqualTo("123 Main St");
+        assertThat(restoredCentral.getAvailableCopies(book1.getIsbn())).isEqualTo(2);
+        assertThat(restoredCentral.getAvailableCopies(book2.getIsbn())).isZero();
+        assertThat(restored.getLibrary("Branch").getAvailableCopies(book3.getIsbn())).isEqualTo(1);
+        assertThat(restoredStudent.getBorrowedBooks()).hasSize(2);
+        assertThat(restored.searchBooksAcrossLibraries("Programming")).hasSize(3);
+        
+        // Every index is built by the bulk load
+        assertThat(restoredCentral.searchBooks("Effective Java")).containsExactly(book1);
+        assertThat(restoredCentral.searchBooks("Efective", SearchMode.FUZZY)).containsExactly(book1);
+        assertThat(restoredCentral.autocomplete("des", 5)).containsExactly("Design Patterns");
+        assertThat(restoredCentral.searchByCategories(new CategoryQuery().allOf("Programming").noneOf("Design"))).containsExactly(book1);
+        assertThat(restoredCentral.getCatalogSnapshot().size()).isEqualTo(2);
+        assertThat(restored.getLibrary("Branch").searchBooks("Clean").get(0)).isEqualTo(book3);
+        
+        // Restored loans can be returned normally
+        assertThat(restoredCentral.returnBook(book1.getIsbn(), restoredStudent)).isTrue();
+        assertThat(restoredCentral.getAvailableCopies(book1.getIsbn())).isEqualTo(3);
+    }
+    
+    @Test
+    @DisplayName("Loading a file that is not a snapshot should fail clearly")
+    void testSnapshotRejectsForeignFile(@TempDir Path dir) throws IOException {
+        Path bogus = dir.resolve("bogus.snapshot");
+        Files.write(bogus, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        
+        assertThatThrownBy(() -> Library.importSnapshot(bogus, id -> null))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Not a library snapshot");
+    }
+    
+    @Test
+    @DisplayName("Compact books should round-trip their fields and be shared across libraries")
+    void testCompactBookStorage() {
+        Book hyphenated = new Book("978-0-13-468599-1", "Effective Java", "Joshua Bloch", Arrays.asList("Java", "Programming"));
+        assertThat(hyphenated.getIsbn()).isEqualTo("978-0-13-468599-1");
+        assertThat(new Book("0000000000001", "T", "A", Arrays.asList()).getIsbn()).isEqualTo("0000000000001");
+        assertThat(new Book("isbn-7", "T", "A", Arrays.asList()).getIsbn()).isEqualTo("isbn-7");
+        assertThat(hyphenated.getCategories()).containsExactly("Java", "Programming");
+        assertThat(hyphenated).isEqualTo(new Book("9780134685991", "Effective Java", "Joshua Bloch", Arrays.asList()));
+        assertThat(hyphenated).isNotEqualTo(new Book("9780134685992", "Effective Java", "Joshua Bloch", Arrays.asList()));
+        
+        // Same ISBN and content added to two libraries of one system is stored once
+        LibrarySystem system = new LibrarySystem();
+        Library other = new Library("Other", "Address");
+        system.addLibrary(library);
+        system.addLibrary(other);
+        library.addBook(book1, 1);
+        other.addBook(new Book(book1.getIsbn(), "Effective Java", new String("Joshua Bloch"), Arrays.asList("Programming", "Java")), 1);
+        assertThat(other.searchBooks("Java").get(0)).isSameAs(library.searchBooks("Java").get(0));
+        
+        // Different content under the same ISBN is not merged, but the author string is shared
+        Library third = new Library("Third", "Address");
+        system.addLibrary(third);
+        third.addBook(new Book(book1.getIsbn(), "Effective Java 3rd Edition", new String("Joshua Bloch"), Arrays.asList("Java")), 1);
+        assertThat(third.searchBooks("Java").get(0).getTitle()).isEqualTo("Effective Java 3rd Edition");
+        assertThat(third.searchBooks("Java").get(0).getAuthor()).isSameAs(library.searchBooks("Java").get(0).getAuthor());
+        assertThat(library.searchBooks("Java").get(0).getTitle()).isEqualTo("Effective Java");
+        
+        // Libraries outside any system keep their own instances
+        Library standalone = new Library("Standalone", "Address");
+        Book copy = new Book(book1.getIsbn(), "Effective Java", "Joshua Bloch", Arrays.asList("Programming", "Java"));
+        standalone.addBook(copy, 1);
+        assertThat(standalone.searchBooks("Java").get(0)).isSameAs(copy);
+        
+        // Ranking ties fall back to the ISBN without formatting it
+        assertThat(hyphenated.compareIsbn(new Book("9780134685992", "T", "A", Arrays.asList()))).isNegative();
+        assertThat(hyphenated.compareIsbn(new Book("isbn-7", "T", "A", Arrays.asList()))).isNegative();
+    }
+    
+    @Test
+    @DisplayName("Long-keyed catalog maps should grow, delete and resolve hyphenation variants")
+    void testPrimitiveCatalogMaps() throws InterruptedException {
+        ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+        for (long key = 0; key < 10_000; key++) {
+            map.put(9_780_000_000_000L + key, "v" + key);
+        }
+        assertThat(map.size()).isEqualTo(10_000);
+        for (long key = 0; key < 10_000; key += 2) {
+            assertThat(map.remove(9_780_000_000_000L + key)).isEqualTo("v" + key);
+        }
+        assertThat(map.size()).isEqualTo(5_000);
+        for (long key = 0; key < 10_000; key++) {
+            assertThat(map.get(9_780_000_000_000L + key)).isEqualTo(key % 2 == 0 ? null : "v" + key);
+        }
+        assertThat(map.putIfAbsent(9_780_000_000_001L, "other")).isEqualTo("v1");
+        assertThatThrownBy(() -> map.put(-1L, "x")).isInstanceOf(IllegalArgumentException.class);
+        
+        // Concurrent writers on disjoint keys lose nothing
+        ConcurrentLongMap<Integer> shared = new ConcurrentLongMap<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) {
+                    shared.computeIfAbsent(i * 4L + offset, k -> (int) k);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) writer.join();
+        assertThat(shared.size()).isEqualTo(20_000);
+        assertThat(shared.get(12_345L)).isEqualTo(12_345);
+        
+        // The library resolves any hyphenation of a stocked ISBN, and non-numeric keys still work
+        library.addBook(book1, 2);
+        assertThat(library.getAvailableCopies("9780134685991")).isEqualTo(2);
+        assertThat(library.borrowBook("978-0-13-468599-1", student)).isTrue();
+        assertThat(library.getAvailableCopies(book1.getIsbn())).isEqualTo(1);
+        library.addBook(new Book("LOCAL-42", "Branch Pamphlet", "Staff", Arrays.asList("Local")), 1);
+        assertThat(library.isBookAvailable("LOCAL-42")).isTrue();
+    }
+    
+    @Test
+    @DisplayName("Cross-branch search should fan out and return partial results at the deadline")
+    void testParallelSearchWithDeadline() {
+        LibrarySystem system = new LibrarySystem();
+        for (int i = 0; i < 20; i++) {
+            Library branch = new Library("Branch " + i, "Address");
+            branch.addBook(new Book(String.format("978%010d", i), "Distributed Systems " + i, "Author", Arrays.asList("Systems")), 1);
+            system.addLibrary(branch);
+        }
+        assertThat(system.searchBooksAcrossLibraries("distributed")).hasSize(20);
+        
+        // The stalled branch answers only once the test releases it, so the search must not wait for it
+        CountDownLatch release = new CountDownLatch(1);
+        Library stalled = new Library("Stalled", "Address") {
+            @Override
+            public List<Book> searchBooks(String query, SearchMode mode) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.searchBooks(query, mode);
+            }
+        };
+        stalled.addBook(new Book("9789999999999", "Distributed Stalls", "Author", Arrays.asList()), 1);
+        system.addLibrary(stalled);
+        
+        try {
+            List<Book> partial = system.searchBooksAcrossLibraries("distributed", SearchMode.TOKEN, Duration.ofMillis(100));
+            assertThat(partial).hasSize(20).extracting(Book::getTitle).doesNotContain("Distributed Stalls");
+        } finally {
+            release.countDown();
+        }
+    }
+    
+    @Test
+    @DisplayName("Availability index should track copies per branch as books move")
+    void testAvailabilityIndexAcrossBranches() {
+        LibrarySystem system = new LibrarySystem();
+        library.addBook(book1, 1);
+        system.addLibrary(library); // existing stock is seeded on registration
+        Library east = new Library("East Branch", "1 East St");
+        system.addLibrary(east);
+        east.addBook(book1, 2);
+        
+        assertThat(system.getAvailabilityByBranch(book1.getIsbn()))
+                .containsOnly(entry(library.getName(), 1), entry("East Branch", 2));
+        
+        library.borrowBook(book1.getIsbn(), student);
+        east.borrowBook(book1.getIsbn(), faculty);
+        assertThat(system.getAvailabilityByBranch("9780134685991")).containsOnly(entry("East Branch", 1));
+        
+        library.returnBook(book1.getIsbn(), student);
+        assertThat(system.getAvailabilityByBranch(book1.getIsbn()))
+                .containsOnly(entry(library.getName(), 1), entry("East Branch", 1));
+        assertThat(system.getAvailabilityByBranch(book2.getIsbn())).isEmpty();
+    }
+    
+    @Test
+    @DisplayName("Ranked search should put title hits first and page without gaps")
+    void testRankedPaginatedSearch() {
+        // book1 has "Java" in its title; these only have it as a category
+        for (int i = 0; i < 5; i++) {
+            library.addBook(new Book(String.format("978100000000%d", i), "Volume " + i, "Writer", Arrays.asList("Java")), 1);
+        }
+        library.addBook(book1, 1);
+        library.addBook(new Book("9782000000000", "Java Cookbook", "Java Hacker", Arrays.asList("Java")), 1);
+        
+        List<Book> firstPage = library.searchBooks("java", 0, 3);
+        assertThat(firstPage).extracting(Book::getTitle)
+                .containsExactly("Effective Java", "Java Cookbook", "Volume 0");
+        assertThat(library.searchBooks("java", 3, 3)).extracting(Book::getTitle)
+                .containsExactly("Volume 1", "Volume 2", "Volume 3");
+        assertThat(library.searchBooks("java", 6, 3)).extracting(Book::getTitle).containsExactly("Volume 4");
+        assertThat(library.searchBooks("java", 10, 3)).isEmpty();
+        
+        // The stream is lazy: taking one match does not require scoring the rest
+        assertThat(library.streamSearch("java").limit(1).count()).isEqualTo(1);
+        assertThat(library.streamSearch("java hacker").map(ScoredBook::getScore).toList())
+                .containsExactly(BookSearchIndex.TITLE_WEIGHT + BookSearchIndex.AUTHOR_WEIGHT);
+        assertThatThrownBy(() -> library.searchBooks("java", -1, 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+    
+    @Test
+    @DisplayName("Search cache should hit on repeats and drop only entries the new book affects")
+    void testSearchCacheInvalidation() {
+        library.addBook(book1, 1);
+        library.addBook(book2, 1);
+        
+        assertThat(library.searchBooks("java")).containsExactly(book1);
+        assertThat(library.searchBooks("JAVA")).containsExactly(book1); // normalized to the same entry
+        assertThat(library.searchBooks("patterns")).containsExactly(book2);
+        assertThat(library.getSearchCacheStats().getHits()).isEqualTo(1);
+        assertThat(library.getSearchCacheStats().getMisses()).isEqualTo(2);
+        
+        // A new Java book drops "java" but keeps "patterns"
+        Book kotlinForJava = new Book("978-1617293290", "Kotlin in Action", "Jemerov", Arrays.asList("Java", "Kotlin"));
+        library.addBook(kotlinForJava, 1);
+        assertThat(library.searchBooks("patterns")).containsExactly(book2);
+        assertThat(library.searchBooks("java")).containsExactlyInAnyOrder(book1, kotlinForJava);
+        assertThat(library.getSearchCacheStats().getHits()).isEqualTo(2);
+        assertThat(library.getSearchCacheStats().getInvalidations()).isEqualTo(1);
+        
+        // Cross-branch results are invalidated by changes in any branch
+        LibrarySystem system = new LibrarySystem();
+        system.addLibrary(library);
+        assertThat(system.searchBooksAcrossLibraries("design")).containsExactly(book2);
+        assertThat(system.searchBooksAcrossLibraries("design")).containsExactly(book2);
+        assertThat(system.getSearchCacheStats().getHits()).isEqualTo(1);
+        Book designBook = new Book("978-0321125217", "Domain-Driven Design", "Eric Evans", Arrays.asList("Design"));
+        library.addBook(designBook, 1);
+        assertThat(system.searchBooksAcrossLibraries("design")).containsExactlyInAnyOrder(book2, designBook);
+        
+        // Size bound and TTL
+        AtomicLong now = new AtomicLong();
+        SearchCache small = new SearchCache(2, 50, now::get);
+        small.put(SearchMode.TOKEN, "a", List.of(book1), small.version());
+        small.put(SearchMode.TOKEN, "b", List.of(book2), small.version());
+        small.put(SearchMode.TOKEN, "c", List.of(book2), small.version());
+        assertThat(small.get(SearchMode.TOKEN, "a")).isNull();
+        assertThat(small.stats().getEvictions()).isEqualTo(1);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(49));
+        assertThat(small.get(SearchMode.TOKEN, "c")).containsExactly(book2);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(small.get(SearchMode.TOKEN, "c")).isNull();
+        
+        // A result computed across a matching catalog change is not served; an unrelated one is
+        long before = small.version();
+        small.invalidate(book1);
+        small.put(SearchMode.TOKEN, "java", List.of(book1), before);
+        small.put(SearchMode.TOKEN, "patterns", List.of(book2), before);
+        assertThat(small.get(SearchMode.TOKEN, "java")).isNull();
+        assertThat(small.get(SearchMode.TOKEN, "patterns")).containsExactly(book2);
+        
+        // Entries that fell behind the change log are dropped rather than checked
+        small.put(SearchMode.TOKEN, "patterns", List.of(book2), small.version());
+        for (int i = 0; i < 300; i++) {
+            small.invalidate(book1);
+        }
+        assertThat(small.get(SearchMode.TOKEN, "patterns")).isNull();
+    }
+    
+    @Test
+    @DisplayName("Returned copies should go straight to the next patron on hold, in order")
+    void testHoldQueueHandoff() {
+        library.addBook(book1, 1);
+        assertThat(library.borrowBook(book1.getIsbn(), student)).isTrue();
+        
+        Student second = new Student("S002", "Carol White", "carol@email.com");
+        CompletableFuture<BorrowRecord> facultyHold = library.placeHold(book1.getIsbn(), faculty);
+        CompletableFuture<BorrowRecord> secondHold = library.placeHold(book1.getIsbn(), second);
+        assertThat(facultyHold).isNotDone();
+        assertThat(library.getHoldQueueLength(book1.getIsbn())).isEqualTo(2);
+        
+        // The return hands the copy over; nobody else can grab it in between
+        assertThat(library.returnBook(book1.getIsbn(), student)).isTrue();
+        assertThat(facultyHold).isCompleted();
+        assertThat(facultyHold.join().getUser()).isSameAs(faculty);
+        assertThat(library.getAvailableCopies(book1.getIsbn())).isZero();
+        assertThat(library.borrowBook(book1.getIsbn(), student)).isFalse();
+        assertThat(secondHold).isNotDone();
+        
+        // Cancelled holds are skipped; new stock serves whoever is still waiting
+        assertThat(library.cancelHold(book1.getIsbn(), second)).isTrue();
+        assertThat(secondHold).isCancelled();
+        CompletableFuture<BorrowRecord> studentHold = library.placeHold(book1.getIsbn(), student);
+        library.addBook(book1, 1);
+        assertThat(studentHold.join().getUser()).isSameAs(student);
+        assertThat(library.getHoldQueueLength(book1.getIsbn())).isZero();
+        
+        // With a copy on the shelf and nobody waiting, a hold is filled immediately
+        library.addBook(book2, 1);
+        assertThat(library.placeHold(book2.getIsbn(), second)).isCompleted();
+        assertThat(library.placeHold("missing", second)).isCompletedExceptionally();
+    }
+    
+    @Test
+    @DisplayName("Returning any book should serve the returner's holds skipped at the loan limit")
+    void testHoldServedAfterReturnOfOtherBook() {
+        library.addBook(book1, 1);
+        for (int i = 0; i < 5; i++) {
+            library.addBook(new Book("isbn-" + i, "Book " + i, "Author " + i, Arrays.asList("Category")), 1);
+        }
+        assertThat(library.borrowBook(book1.getIsbn(), faculty)).isTrue();
+        CompletableFuture<BorrowRecord> hold = library.placeHold(book1.getIsbn(), student);
+        for (int i = 0; i < 5; i++) {
+            assertThat(library.borrowBook("isbn-" + i, student)).isTrue();
+        }
+        
+        // The copy comes back while the student is at the limit, so it stays on the shelf
+        assertThat(library.returnBook(book1.getIsbn(), faculty)).isTrue();
+        assertThat(hold).isNotDone();
+        assertThat(library.getAvailableCopies(book1.getIsbn())).isEqualTo(1);
+        
+        // Returning another book frees a slot, and the waiting copy is handed over at once
+        assertThat(library.returnBook("isbn-0", student)).isTrue();
+        assertThat(hold).isCompleted();
+        assertThat(hold.join().getBook()).isEqualTo(book1);
+        assertThat(library.getAvailableCopies(book1.getIsbn())).isZero();
+        assertThat(library.getHoldQueueLength(book1.getIsbn())).isZero();
+        
+        // Batch returns do the same; the handoff left the student at the limit again
+        library.addBook(book2, 1);
+        assertThat(library.borrowBook(book2.getIsbn(), faculty)).isTrue();
+        CompletableFuture<BorrowRecord> batchHold = library.placeHold(book2.getIsbn(), student);
+        assertThat(library.returnBook(book2.getIsbn(), faculty)).isTrue();
+        assertThat(batchHold).isNotDone();
+        library.returnBooks(List.of(new LoanRequest("isbn-1", student)));
+        assertThat(batchHold).isCompleted();
+    }
+    
+    @Test
+    @DisplayName("Async borrow and return should complete with typed results and bound admission")
+    void testAsyncBorrowAndReturn() throws InterruptedException {
+        library.addBook(book1, 1);
+        try (AsyncLibrary async = new AsyncLibrary(library, 2)) {
+            LoanResult borrowed = async.borrowBook(book1.getIsbn(), student).join();
+            assertThat(borrowed.getOutcome()).isEqualTo(LoanOutcome.SUCCESS);
+            assertThat(borrowed.getRecord().getUser()).isSameAs(student);
+            
+            // Pipelined: the second borrow sees the copy is gone, then a return frees it
+            LoanResult result = async.borrowBook(book1.getIsbn(), faculty)
+                    .thenCompose(r -> {
+                        assertThat(r.getOutcome()).isEqualTo(LoanOutcome.NOT_AVAILABLE);
+                        return async.returnBook(book1.getIsbn(), student);
+                    })
+                    .join();
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.getFine()).isZero();
+            assertThat(async.returnBook(book1.getIsbn(), student).join().getOutcome()).isEqualTo(LoanOutcome.NO_ACTIVE_LOAN);
+            assertThat(async.borrowBook("missing", student).join().getOutcome()).isEqualTo(LoanOutcome.BOOK_NOT_FOUND);
+            
+            // Backpressure: with both permits held by blocked operations, a third call is rejected
+            CountDownLatch release = new CountDownLatch(1);
+            Library slow = new Library("Slow", "Address") {
+                @Override
+                public LoanResult tryBorrow(String isbn, User user) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.tryBorrow(isbn, user);
+                }
+            };
+            try (AsyncLibrary bounded = new AsyncLibrary(slow, 2)) {
+                CompletableFuture<LoanResult> first = bounded.borrowBook("x", student);
+                CompletableFuture<LoanResult> second = bounded.borrowBook("x", student);
+                assertThatThrownBy(() -> bounded.borrowBook("x", student).join())
+                        .hasCauseInstanceOf(RejectedExecutionException.class);
+                release.countDown();
+                assertThat(first.join().getOutcome()).isEqualTo(LoanOutcome.BOOK_NOT_FOUND);
+                second.join();
+                assertThat(bounded.availablePermits()).isEqualTo(2);
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("Borrow, return, fine and rejection events should reach every sink in order")
+    void testEventPipelineSinks(@TempDir Path dir) throws IOException {
+        InMemoryEventSink memory = EventSinks.inMemory();
+        Path log = dir.resolve("events.log");
+        try (EventPipeline pipeline = new EventPipeline(List.of(memory, EventSinks.file(log)))) {
+            library.setEventPipeline(pipeline);
+            library.addBook(book1, 1);
+            
+            library.borrowBook(book1.getIsbn(), student);
+            library.borrowBook(book1.getIsbn(), faculty);
+            library.restoreLoan(book1.getIsbn(), faculty, LocalDate.now().minusDays(120));
+            library.returnBook(book1.getIsbn(), faculty);
+            library.returnBook("missing", faculty);
+            pipeline.flush();
+            
+            assertThat(memory.getEvents()).extracting(LibraryEvent::getType).containsExactly(
+                    EventType.BORROW, EventType.REJECTION, EventType.FINE, EventType.RETURN, EventType.REJECTION);
+            LibraryEvent rejection = memory.getEvents().get(1);
+            assertThat(rejection.getReason()).isEqualTo(LoanOutcome.NOT_AVAILABLE);
+            assertThat(rejection.getUserId()).isEqualTo("F001");
+            assertThat(rejection.describe()).isEqualTo("Book is not available");
+            assertThat(memory.getEvents().get(2).getFine()).isPositive();
+            assertThat(memory.getEvents().get(4).getReason()).isEqualTo(LoanOutcome.BOOK_NOT_FOUND);
+            assertThat(Files.readAllLines(log)).hasSize(5);
+        }
+        
+        // A full ring drops instead of blocking the caller
+        CountDownLatch stuck = new CountDownLatch(1);
+        EventSink blocking = event -> {
+            try {
+                stuck.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try (EventPipeline tiny = new EventPipeline(2, List.of(blocking))) {
+            int accepted = 0;
+            for (int i = 0; i < 10; i++) {
+                if (tiny.publish(EventType.BORROW, "L", "isbn", "u", "t", null, 0.0)) accepted++;
+            }
+            assertThat(accepted).isBetween(2, 3); // the consumer may already hold the first slot
+            assertThat(tiny.getDroppedCount()).isEqualTo(10 - accepted);
+            stuck.countDown();
+            tiny.flush();
+            assertThat(tiny.getDeliveredCount()).isEqualTo(accepted);
+        }
+    }
+    
+    @Test
+    @DisplayName("Metrics should record latency, lock waits and outcomes, and be visible over JMX")
+    void testLibraryMetrics() throws Exception {
+        library.addBook(book1, 1);
+        LibraryMetrics metrics = library.getMetrics();
+        metrics.reset();
+        metrics.setTimingSampleInterval(1);
+        
+        library.borrowBook(book1.getIsbn(), student);
+        library.borrowBook(book1.getIsbn(), faculty);
+        library.borrowBook("missing", faculty);
+        library.returnBook(book1.getIsbn(), student);
+        library.searchBooks("java");
+        
+        assertThat(metrics.getLatency(LibraryMetrics.Operation.BORROW).getCount()).isEqualTo(3);
+        assertThat(metrics.getOutcomeCount(LibraryMetrics.Operation.BORROW, LoanOutcome.SUCCESS)).isEqualTo(1);
+        assertThat(metrics.getOutcomeCount(LibraryMetrics.Operation.BORROW, LoanOutcome.NOT_AVAILABLE)).isEqualTo(1);
+        assertThat(metrics.getOutcomeCount(LibraryMetrics.Operation.BORROW, LoanOutcome.BOOK_NOT_FOUND)).isEqualTo(1);
+        assertThat(metrics.getOutcomeCounts()).containsEntry("return.SUCCESS", 1L);
+        assertThat(metrics.getLatencyNanos()).containsEntry("search.count", 1L).containsKey("borrow.p99");
+        assertThat(metrics.getLockAcquisitions()).isEqualTo(4);
+        
+        // Disabled metrics record nothing
+        metrics.setEnabled(false);
+        library.borrowBook(book1.getIsbn(), student);
+        assertThat(metrics.getLatency(LibraryMetrics.Operation.BORROW).getCount()).isEqualTo(3);
+        metrics.setEnabled(true);
+        
+        ObjectName name = metrics.registerMBean("Metrics Test Library");
+        try {
+            assertThat(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "LockAcquisitions")).isEqualTo(4L);
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+        
+        // Unsampled operations still count their outcomes, they are just not timed
+        metrics.setTimingSampleInterval(1 << 30);
+        for (int i = 0; i < 100; i++) library.borrowBook("missing", student);
+        assertThat(metrics.getOutcomeCount(LibraryMetrics.Operation.BORROW, LoanOutcome.BOOK_NOT_FOUND)).isEqualTo(101);
+        assertThat(metrics.getLatency(LibraryMetrics.Operation.BORROW).getCount()).isLessThan(5);
+        assertThatThrownBy(() -> metrics.setTimingSampleInterval(3)).isInstanceOf(IllegalArgumentException.class);
+        
+        // Buckets keep values within about 6%
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 1000; v++) histogram.record(v * 1000);
+        assertThat(histogram.getValueAtPercentile(50)).isBetween(470_000L, 530_000L);
+        assertThat(histogram.getValueAtPercentile(99)).isBetween(930_000L, 1_000_000L);
+        assertThat(histogram.getMaxNanos()).isEqualTo(1_000_000L);
+    }
+    
+    @Test
+    @DisplayName("Workload simulator should keep inventory equal to stock minus active loans")
+    void testWorkloadSimulatorInvariant() throws InterruptedException {
+        WorkloadSimulator.Config config = new WorkloadSimulator.Config()
+                .seed(7).threads(4).operationsPerThread(2_000)
+                .branches(2).titles(200).copiesPerTitle(2).users(100, 10);
+        WorkloadSimulator.Report report;
+        try (WorkloadSimulator simulator = new WorkloadSimulator(config)) {
+            report = simulator.run();
+        }
+        
+        assertThat(report.getTotalOperations()).isEqualTo(8_000);
+        assertThat(report.getSuccessfulLoanOperations()).isPositive();
+        assertThat(report.getViolations()).isEmpty();
+        
+        // Popularity is skewed: the top title carries far more weight than the median one
+        double[] cdf = WorkloadSimulator.zipfCdf(1_000, 1.1);
+        assertThat(cdf[0]).isGreaterThan(50 * (cdf[500] - cdf[499]));
+        assertThat(cdf[999]).isCloseTo(1.0, within(1e-9));
+    }
+    
+    @Test
+    @DisplayName("Category bitmaps should answer boolean filters and facet counts")
+    void testCategoryBitmapFilters() {
+        library.addBook(book1, 1);
+        library.addBook(book2, 1);
+        library.addBook(new Book("978-0132350884", "Clean Code", "Robert Martin",
+                List.of("Java", "Design", "Best Practices")), 1);
+        library.addBook(new Book("978-0596007126", "Head First Design Patterns", "Eric Freeman",
+                List.of("Java", "Design")), 1);
+        
+        List<String> titles = library.searchByCategories(new CategoryQuery().allOf("Java", "Design")
+                        .noneOf("Best Practices")).stream()
+                .map(Book::getTitle)
+                .toList();
+        assertThat(titles).containsExactly("Head First Design Patterns");
+        assertThat(library.searchByCategories(new CategoryQuery().anyOf("Design", "Unknown"))).hasSize(3);
+        assertThat(library.searchByCategories(new CategoryQuery().allOf("Unknown"))).isEmpty();
+        
+        Map<String, Integer> facets = library.getCategoryFacets(new CategoryQuery().allOf("Java"));
+        assertThat(facets).containsExactly(Map.entry("Java", 3), Map.entry("Design", 2),
+                Map.entry("Best Practices", 1), Map.entry("Programming", 1));
+        
+        // Re-adding a book with new categories moves it between bitmaps
+        library.addBook(new Book("978-0134685991", "Effective Java", "Joshua Bloch", List.of("Java", "Best Practices")), 0);
+        assertThat(library.getCategoryFacets(new CategoryQuery().allOf("Best Practices")))
+                .containsEntry("Best Practices", 2)
+                .doesNotContainKey("Programming");
+        
+        // Dense and sparse containers agree with a plain set through every operation
+        RoaringBitmap evens = new RoaringBitmap();
+        RoaringBitmap sparse = new RoaringBitmap();
+        for (int i = 0; i < 200_000; i += 2) evens.add(i);
+        for (int i = 0; i < 200_000; i += 7) sparse.add(i);
+        assertThat(evens.cardinality()).isEqualTo(100_000);
+        assertThat(RoaringBitmap.and(evens, sparse).cardinality()).isEqualTo(200_000 / 14 + 1);
+        assertThat(RoaringBitmap.andCardinality(evens, sparse)).isEqualTo(200_000 / 14 + 1);
+        assertThat(RoaringBitmap.or(evens, sparse).cardinality()).isEqualTo(100_000 + 28_572 - 14_286);
+        assertThat(RoaringBitmap.andNot(sparse, evens).contains(7)).isTrue();
+        assertThat(RoaringBitmap.andNot(sparse, evens).contains(14)).isFalse();
+        for (int i = 0; i < 200_000; i += 4) evens.remove(i);
+        assertThat(evens.cardinality()).isEqualTo(50_000);
+        assertThat(evens.contains(6)).isTrue();
+        assertThat(evens.contains(8)).isFalse();
+        
+        // Churn across the array/bitmap switch point keeps the set exact
+        RoaringBitmap churn = new RoaringBitmap();
+        for (int i = 0; i < 4096; i++) churn.add(i);
+        for (int round = 0; round < 1_000; round++) {
+            churn.add(5_000 + round);
+            churn.remove(5_000 + round);
+        }
+        assertThat(churn.cardinality()).isEqualTo(4096);
+        for (int i = 0; i < 1_100; i++) churn.remove(i);
+        assertThat(churn.cardinality()).isEqualTo(2996);
+        assertThat(churn.contains(1_100)).isTrue();
+        assertThat(churn.contains(1_099)).isFalse();
+    }
+    
+    @Test
+    @DisplayName("Catalog snapshots should be immutable versions that readers use without locking")
+    void testCatalogSnapshots() throws InterruptedException {
+        library.addBook(book1, 3);
+        library.addBook(book2, 2);
+        CatalogSnapshot before = library.getCatalogSnapshot();
+        
+        library.borrowBook(book1.getIsbn(), student);
+        CatalogSnapshot after = library.getCatalogSnapshot();
+        
+        assertThat(before.getAvailableCopies(book1.getIsbn())).isEqualTo(3);
+        assertThat(after.getAvailableCopies("9780134685991")).isEqualTo(2);
+        assertThat(after.getVersion()).isGreaterThan(before.getVersion());
+        assertThat(after.size()).isEqualTo(2);
+        assertThat(after.getBook(book2.getIsbn())).isEqualTo(book2);
+        assertThat(after.getBooks()).containsExactlyInAnyOrder(book1, book2);
+        
+        // Versions share structure: a one-book change leaves every other entry, and the old version, intact
+        List<CatalogSnapshot.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Book book = new Book(i % 10 == 0 ? "LOCAL-" + i : String.format("979%010d", i), "Title " + i, "Author", List.of());
+            entries.add(new CatalogSnapshot.Entry(book, i));
+        }
+        CatalogSnapshot large = CatalogSnapshot.EMPTY.apply(1, entries);
+        CatalogSnapshot changed = large.apply(2, List.of(new CatalogSnapshot.Entry(entries.get(42).book, -1)));
+        assertThat(large.size()).isEqualTo(5000);
+        assertThat(changed.size()).isEqualTo(5000);
+        assertThat(large.getAvailableCopies("9790000000042")).isEqualTo(42);
+        assertThat(changed.getAvailableCopies("979-0000000042")).isEqualTo(-1);
+        for (int i = 0; i < 5000; i += 7) {
+            String isbn = entries.get(i).book.getIsbn();
+            assertThat(changed.getBook(isbn)).isSameAs(entries.get(i).book);
+            if (i != 42) assertThat(changed.getAvailableCopies(isbn)).isEqualTo(i);
+        }
+        assertThat(changed.getBook("LOCAL-5001")).isNull();
+        
+        // Readers spin on snapshots while patrons borrow and return; versions only move forward
+        List<User> patrons = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            patrons.add(new Faculty("FX" + i, "Patron " + i, "p" + i + "@example.edu"));
+        }
+        AtomicInteger anomalies = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            long lastVersion = 0;
+            for (int i = 0; i < 20_000; i++) {
+                CatalogSnapshot snapshot = library.getCatalogSnapshot();
+                int available = snapshot.getAvailableCopies(book2.getIsbn());
+                if (snapshot.getVersion() < lastVersion || available < 0 || available > 2 || snapshot.size() != 2) {
+                    anomalies.incrementAndGet();
+                }
+                lastVersion = snapshot.getVersion();
+            }
+        });
+        List<Thread> writers = new ArrayList<>();
+        for (User patron : patrons) {
+            writers.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (library.borrowBook(book2.getIsbn(), patron)) library.returnBook(book2.getIsbn(), patron);
+                }
+            }));
+        }
+        reader.start();
+        writers.forEach(Thread::start);
+        for (Thread writer : writers) writer.join();
+        reader.join();
+        
+        assertThat(anomalies.get()).isZero();
+        assertThat(library.getAvailableCopies(book2.getIsbn())).isEqualTo(2);
+    }
+    
+    @Test
+    @DisplayName("Overdue queries should never lose or duplicate loans while returns churn the index")
+    void testDueDateIndexUnderChurn() throws InterruptedException {
+        library.addBook(book1, 1);
+        library.addBook(book2, 1);
+        LocalDate longAgo = LocalDate.now().minusDays(400);
+        library.restoreLoan(book2.getIsbn(), student, longAgo.minusDays(1)); // stays on loan throughout
+        
+        AtomicInteger anomalies = new AtomicInteger();
+        Thread churn = new Thread(() -> {
+            for (int i = 0; i < 5_000; i++) {
+                library.restoreLoan(book1.getIsbn(), faculty, longAgo);
+                library.returnBook(book1.getIsbn(), faculty);
+            }
+            library.restoreLoan(book1.getIsbn(), faculty, longAgo);
+        });
+        Thread reader = new Thread(() -> {
+            while (churn.isAlive()) {
+                List<BorrowRecord> overdue = library.getOverdueLoans(LocalDate.now());
+                long pinned = overdue.stream().filter(loan -> loan.getUser() == student).count();
+                if (pinned != 1 || overdue.size() > 2) anomalies.incrementAndGet();
+            }
+        });
+        churn.start();
+        reader.start();
+        churn.join();
+        reader.join();
+        
+        assertThat(anomalies.get()).isZero();
+        assertThat(library.getOverdueLoans(LocalDate.now())).hasSize(2);
+    }
+}